@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how the latency of phrase and proximity queries grows with the size of the
+ * corpus. Each corpus is generated from a fixed seed with word frequencies that follow
+ * Zipf's law, like natural text, so runs are reproducible and need no files. The words
+ * are added to the index directly, without stemming.
+ *
+ * Usage: <code>java PhraseBenchmark [documents...]</code>, where each argument is the
+ * number of locations of one corpus. Prints one line per corpus with the average time
+ * of each kind of query on the mutable and the frozen index.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class PhraseBenchmark {
+
+	/** The default numbers of locations of each corpus. */
+	private static final int[] DOCUMENTS = { 1000, 4000, 16000 };
+
+	/** The number of words in each location. */
+	private static final int LENGTH = 200;
+
+	/** The number of distinct words in every corpus. */
+	private static final int VOCABULARY = 20000;
+
+	/** The number of queries of each kind. */
+	private static final int QUERIES = 500;
+
+	/** The number of untimed runs that warm up the JIT compiler first. */
+	private static final int WARMUP = 5;
+
+	/** The number of timed runs, of which the fastest is reported. */
+	private static final int RUNS = 5;
+
+	/** The largest distance of proximity queries. */
+	private static final int DISTANCE = 5;
+
+	/** The seed of every corpus and set of queries. */
+	private static final long SEED = 212;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the number of locations of each corpus
+	 */
+	public static void main(String[] args) {
+		int[] sizes = DOCUMENTS;
+
+		if (args.length > 0) {
+			sizes = Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+		}
+
+		System.out.printf("%10s %12s %14s %14s %14s %14s%n", "documents", "positions",
+				"phrase (us)", "frozen (us)", "near (us)", "frozen (us)");
+
+		for (int documents : sizes) {
+			run(documents);
+		}
+	}
+
+	/**
+	 * Builds a corpus of the given size and times every kind of query against it.
+	 *
+	 * @param documents the number of locations of the corpus
+	 */
+	private static void run(int documents) {
+		Random random = new Random(SEED);
+		double[] cumulative = zipf(VOCABULARY);
+		InvertedIndex index = new InvertedIndex();
+		List<List<String>> phrases = new ArrayList<>();
+
+		for (int id = 0; id < documents; id++) {
+			String[] text = new String[LENGTH];
+
+			for (int position = 0; position < LENGTH; position++) {
+				text[position] = "w" + sample(cumulative, random);
+				index.add(text[position], "doc" + id, position + 1);
+			}
+
+			// Picks phrases out of the text, so every query matches at least once.
+			if (phrases.size() < QUERIES && random.nextInt(Math.max(1, documents / QUERIES)) == 0) {
+				int start = random.nextInt(LENGTH - 3);
+				phrases.add(List.of(text).subList(start, start + 2 + random.nextInt(2)));
+			}
+		}
+
+		FrozenIndex frozen = index.freeze();
+
+		System.out.printf("%10d %12d %14.1f %14.1f %14.1f %14.1f%n", documents, (long) documents * LENGTH,
+				time(index, phrases, false), time(frozen, phrases, false),
+				time(index, phrases, true), time(frozen, phrases, true));
+	}
+
+	/**
+	 * Returns the fastest average time of running every query against the index.
+	 *
+	 * @param index the index to search
+	 * @param phrases the phrases to search for
+	 * @param near whether to search for the first two words of each phrase near each other instead
+	 * @return the average time of one query, in microseconds
+	 */
+	private static double time(InvertedIndex index, List<List<String>> phrases, boolean near) {
+		long best = Long.MAX_VALUE;
+		int found = 0;
+
+		for (int run = 0; run < WARMUP + RUNS; run++) {
+			long start = System.nanoTime();
+
+			for (List<String> phrase : phrases) {
+				List<InvertedIndex.SearchResult> results = near
+						? index.proximitySearch(phrase.get(0), phrase.get(1), DISTANCE, 10)
+						: index.phraseSearch(phrase, 10);
+				found += results.size();
+			}
+
+			if (run >= WARMUP) {
+				best = Math.min(best, System.nanoTime() - start);
+			}
+		}
+
+		if (found == 0) {
+			throw new IllegalStateException("No query found any results.");
+		}
+		return best / 1000.0 / phrases.size();
+	}
+
+	/**
+	 * Returns the cumulative probabilities of the words of a vocabulary under Zipf's law.
+	 *
+	 * @param vocabulary the number of distinct words
+	 * @return the cumulative probability of each word, from most to least common
+	 */
+	private static double[] zipf(int vocabulary) {
+		double[] cumulative = new double[vocabulary];
+		double total = 0;
+
+		for (int rank = 0; rank < vocabulary; rank++) {
+			total += 1.0 / (rank + 1);
+			cumulative[rank] = total;
+		}
+
+		for (int rank = 0; rank < vocabulary; rank++) {
+			cumulative[rank] /= total;
+		}
+		return cumulative;
+	}
+
+	/**
+	 * Draws the rank of a random word.
+	 *
+	 * @param cumulative the cumulative probability of each word
+	 * @param random the source of randomness
+	 * @return the rank of the word
+	 */
+	private static int sample(double[] cumulative, Random random) {
+		int index = Arrays.binarySearch(cumulative, random.nextDouble());
+		return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+	}
+}
@@ -0,0 +1,97 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * Measures how many words per second are stemmed with and without a {@link StemCache},
+ * and the hit rate of caches of several capacities, on the words of real text files.
+ * Every word is stemmed in the order it appears, the same as when building the index.
+ *
+ * Usage: <code>java StemCacheBenchmark path</code>, where the path is a text file or a
+ * directory of text files.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class StemCacheBenchmark {
+
+	/** The capacities of the caches to compare. */
+	private static final int[] CAPACITIES = { 1 << 10, 1 << 12, StemCache.CAPACITY, 1 << 16 };
+
+	/** The number of untimed runs that warm up the JIT compiler first. */
+	private static final int WARMUP = 3;
+
+	/** The number of timed runs, of which the fastest is reported. */
+	private static final int RUNS = 5;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the path of the text to stem
+	 * @throws IOException if unable to read the text
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: java StemCacheBenchmark path");
+			return;
+		}
+
+		List<String> words = new ArrayList<>();
+
+		for (Path file : DirectoryTraverser.traverseDirectory(Path.of(args[0]))) {
+			for (String word : TextParser.parseFile(file)) {
+				if (!word.isEmpty()) {
+					words.add(word);
+				}
+			}
+		}
+
+		System.out.printf("%d words%n", words.size());
+
+		double uncached = time(new SnowballStemmer(TextStemmer.DEFAULT), words);
+		System.out.printf("%-24s %12.0f stems/s%n", "uncached", uncached);
+
+		for (int capacity : CAPACITIES) {
+			StemCache cache = new StemCache(new SnowballStemmer(TextStemmer.DEFAULT), capacity);
+			double cached = time(cache, words);
+
+			// Every run stems the same words, so the counts of the cache add up over all of them.
+			System.out.printf("%-24s %12.0f stems/s %6.2fx   %s%n", "cached, " + capacity + " words",
+					cached, cached / uncached, cache);
+		}
+	}
+
+	/**
+	 * Returns the fastest rate of stemming every word.
+	 *
+	 * @param stemmer the stemmer to use
+	 * @param words the words to stem
+	 * @return the number of words stemmed per second
+	 */
+	private static double time(Stemmer stemmer, List<String> words) {
+		long best = Long.MAX_VALUE;
+		int length = 0;
+
+		for (int run = 0; run < WARMUP + RUNS; run++) {
+			long start = System.nanoTime();
+
+			for (String word : words) {
+				length += stemmer.stem(word).length();
+			}
+
+			if (run >= WARMUP) {
+				best = Math.min(best, System.nanoTime() - start);
+			}
+		}
+
+		if (length == 0) {
+			throw new IllegalStateException("No words were stemmed.");
+		}
+		return words.size() / (best / 1e9);
+	}
+}
@@ -0,0 +1,683 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A boolean query of exact stemmed words combined with the operators <code>AND</code>,
+ * <code>OR</code>, and <code>NOT</code>, which must be written in uppercase, and grouped
+ * with parentheses. <code>NOT</code> binds tightest and <code>OR</code> loosest. Words
+ * next to each other without an operator are combined with <code>OR</code>, just like
+ * a plain query, and <code>a NOT b</code> means <code>a AND NOT b</code>.
+ *
+ * Negated words exclude locations from the conjunction they are part of. A conjunction
+ * without any word outside of a <code>NOT</code>, such as <code>NOT a</code>, matches
+ * every location that does not contain the negated words. The count of each result is
+ * the total number of times the words it matched appear in the location, which is zero
+ * for a location only matched by such a conjunction.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ *
+ * @see InvertedIndex#booleanSearch(BooleanQuery, int)
+ */
+public class BooleanQuery {
+
+	/** The root of the parsed query. */
+	private final Node root;
+
+	/**
+	 * Initializes a boolean query.
+	 *
+	 * @param root the root of the parsed query
+	 */
+	private BooleanQuery(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Parses a line of queries as a boolean query.
+	 *
+	 * @param line the line to parse
+	 * @return the boolean query, or null if the line has no boolean operators or words
+	 */
+	public static BooleanQuery parse(String line) {
+		String[] tokens = line.replace("(", " ( ").replace(")", " ) ").strip().split("\\s+");
+		boolean operators = false;
+
+		for (String token : tokens) {
+			operators |= token.equals("AND") || token.equals("OR") || token.equals("NOT");
+		}
+
+		if (!operators) {
+			return null;
+		}
+
+		Parser parser = new Parser(tokens);
+		Node root = parser.parseQuery();
+		return root == null ? null : new BooleanQuery(root);
+	}
+
+	/**
+	 * Searches the index for the query. Should be called through
+	 * {@link InvertedIndex#booleanSearch(BooleanQuery, int)} so the index can protect
+	 * its postings while they are read.
+	 *
+	 * @param index the index to search
+	 * @param k the maximum number of search results to return
+	 * @return a sorted list of at most k search results
+	 */
+	public List<InvertedIndex.SearchResult> search(InvertedIndex index, int k) {
+		int[] lengths = index.getCounts();
+		Matches matches = root.evaluate(index, lengths.length);
+		int[] ids = new int[matches.size()];
+		int[] found = new int[matches.size()];
+		int size = 0;
+
+		for (int i = 0; i < matches.size(); i++) {
+			// Skips locations added to the index after its word counts were read.
+			if (matches.getDocument(i) < lengths.length) {
+				ids[size] = matches.getDocument(i);
+				found[size] = matches.getCount(i);
+				size++;
+			}
+		}
+		return InvertedIndex.selectTop(index.createResults(size, ids, found, lengths), k);
+	}
+
+	/**
+	 * Returns the query with its stemmed words, as used for the keys of search results.
+	 */
+	@Override
+	public String toString() {
+		return root.toString();
+	}
+
+	/**
+	 * Nested class that parses tokens by recursive descent.
+	 */
+	private static class Parser {
+
+		/** The tokens to parse. */
+		private final String[] tokens;
+
+		/** The index of the next token. */
+		private int next;
+
+		/**
+		 * Initializes the parser.
+		 *
+		 * @param tokens the tokens to parse
+		 */
+		public Parser(String[] tokens) {
+			this.tokens = tokens;
+			this.next = 0;
+		}
+
+		/**
+		 * Parses every token, skipping unbalanced closing parentheses.
+		 *
+		 * @return the root of the query, or null if there are no words
+		 */
+		public Node parseQuery() {
+			List<Node> children = new ArrayList<>();
+
+			while (next < tokens.length) {
+				add(children, parseOr());
+
+				if (next < tokens.length) {
+					next++;
+				}
+			}
+			return Or.of(children);
+		}
+
+		/**
+		 * Parses conjunctions separated by <code>OR</code> or nothing at all, up to a
+		 * closing parenthesis.
+		 *
+		 * @return the parsed node, or null if there are no words
+		 */
+		private Node parseOr() {
+			List<Node> children = new ArrayList<>();
+
+			while (next < tokens.length && !tokens[next].equals(")")) {
+				if (tokens[next].equals("OR")) {
+					next++;
+				}
+				else {
+					add(children, parseAnd());
+				}
+			}
+			return Or.of(children);
+		}
+
+		/**
+		 * Parses words joined by <code>AND</code> or <code>NOT</code>.
+		 *
+		 * @return the parsed node, or null if there are no words
+		 */
+		private Node parseAnd() {
+			List<Node> positives = new ArrayList<>();
+			List<Node> negatives = new ArrayList<>();
+
+			add(positives, parseUnary(positives, negatives));
+
+			while (next < tokens.length && (tokens[next].equals("AND") || tokens[next].equals("NOT"))) {
+				if (tokens[next].equals("AND")) {
+					next++;
+				}
+				add(positives, parseUnary(positives, negatives));
+			}
+			return And.of(positives, negatives);
+		}
+
+		/**
+		 * Parses a word, a negation, or a group in parentheses. Negations are added to the
+		 * given conjunction directly.
+		 *
+		 * @param positives the words of the conjunction being parsed
+		 * @param negatives the negated words of the conjunction being parsed
+		 * @return the parsed node, or null if it was a negation or has no words
+		 */
+		private Node parseUnary(List<Node> positives, List<Node> negatives) {
+			if (next >= tokens.length) {
+				return null;
+			}
+
+			String token = tokens[next++];
+
+			if (token.equals("NOT")) {
+				List<Node> ignored = new ArrayList<>();
+				add(negatives, parseUnary(ignored, ignored));
+				return null;
+			}
+
+			if (token.equals("(")) {
+				Node group = parseOr();
+
+				if (next < tokens.length) {
+					next++;
+				}
+				return group;
+			}
+
+			if (token.equals(")")) {
+				// Leaves the parenthesis to close the group being parsed.
+				next--;
+				return null;
+			}
+
+			if (token.equals("AND") || token.equals("OR")) {
+				// Ignores operators without a word after them.
+				return null;
+			}
+
+			List<String> stems = TextStemmer.listStems(token);
+			return stems.isEmpty() ? null : new Term(stems.get(0));
+		}
+
+		/**
+		 * Adds the node to the list if it is not null.
+		 *
+		 * @param nodes the list to add to
+		 * @param node the node to add
+		 */
+		private static void add(List<Node> nodes, Node node) {
+			if (node != null) {
+				nodes.add(node);
+			}
+		}
+	}
+
+	/**
+	 * Nested class that is a node of a parsed query.
+	 */
+	private abstract static class Node {
+
+		/**
+		 * Finds the locations that match the node.
+		 *
+		 * @param index the index to search
+		 * @param documents the number of locations in the index
+		 * @return the matches, sorted by location ID
+		 */
+		public abstract Matches evaluate(InvertedIndex index, int documents);
+	}
+
+	/**
+	 * Nested class that matches a single stemmed word.
+	 */
+	private static class Term extends Node {
+
+		/** The stemmed word. */
+		private final String word;
+
+		/**
+		 * Initializes the term.
+		 *
+		 * @param word the stemmed word
+		 */
+		public Term(String word) {
+			this.word = word;
+		}
+
+		@Override
+		public Matches evaluate(InvertedIndex index, int documents) {
+			Postings postings = index.getPostings(word);
+			return postings == null ? Matches.EMPTY : new PostingMatches(postings);
+		}
+
+		@Override
+		public String toString() {
+			return word;
+		}
+	}
+
+	/**
+	 * Nested class that matches the locations that match every positive child and none
+	 * of the negative children.
+	 */
+	private static class And extends Node {
+
+		/** The children every match must match. */
+		private final List<Node> positives;
+
+		/** The children no match may match. */
+		private final List<Node> negatives;
+
+		/**
+		 * Initializes the conjunction.
+		 *
+		 * @param positives the children every match must match
+		 * @param negatives the children no match may match
+		 */
+		private And(List<Node> positives, List<Node> negatives) {
+			this.positives = positives;
+			this.negatives = negatives;
+		}
+
+		/**
+		 * Returns a conjunction of the children, or the only child if there is nothing to combine.
+		 *
+		 * @param positives the children every match must match
+		 * @param negatives the children no match may match
+		 * @return the combined node, or null if there are no children
+		 */
+		public static Node of(List<Node> positives, List<Node> negatives) {
+			if (positives.isEmpty() && negatives.isEmpty()) {
+				return null;
+			}
+			return positives.size() == 1 && negatives.isEmpty() ? positives.get(0) : new And(positives, negatives);
+		}
+
+		/**
+		 * Leapfrogs through the matches of the children, rarest first. The rarest child
+		 * leads and every other child gallops to its location, so the work depends on the
+		 * number of locations of the rarest child instead of all of them. Locations that
+		 * are left are then excluded if a negative child gallops onto them. Without any
+		 * positive children, every location leads instead.
+		 */
+		@Override
+		public Matches evaluate(InvertedIndex index, int documents) {
+			Matches[] lists = new Matches[Math.max(positives.size(), 1)];
+
+			if (positives.isEmpty()) {
+				lists[0] = new AllMatches(documents);
+			}
+
+			for (int i = 0; i < positives.size(); i++) {
+				lists[i] = positives.get(i).evaluate(index, documents);
+			}
+
+			for (Matches list : lists) {
+				if (list.size() == 0) {
+					return Matches.EMPTY;
+				}
+			}
+
+			// Orders the children by document frequency so the rarest leads.
+			Arrays.sort(lists, Comparator.comparingInt(Matches::size));
+
+			Matches[] excluded = new Matches[negatives.size()];
+
+			for (int i = 0; i < excluded.length; i++) {
+				excluded[i] = negatives.get(i).evaluate(index, documents);
+			}
+
+			ArrayMatches found = new ArrayMatches(lists[0].size());
+			int[] indexes = new int[lists.length];
+			int[] skips = new int[excluded.length];
+			int document = lists[0].getDocument(0);
+			int list = 0;
+
+			while (true) {
+				indexes[list] = lists[list].advance(indexes[list], document);
+
+				if (indexes[list] >= lists[list].size()) {
+					break;
+				}
+
+				int current = lists[list].getDocument(indexes[list]);
+
+				if (current != document) {
+					// Moves every child up to the location this child skipped to.
+					document = current;
+					list = 0;
+				}
+				else if (++list == lists.length) {
+					if (!isExcluded(excluded, skips, document)) {
+						int count = 0;
+
+						for (int i = 0; i < lists.length; i++) {
+							count += lists[i].getCount(indexes[i]);
+						}
+						found.add(document, count);
+					}
+
+					document++;
+					list = 0;
+				}
+			}
+			return found;
+		}
+
+		/**
+		 * Returns whether any negative child matches the location.
+		 *
+		 * @param excluded the matches of the negative children
+		 * @param skips where each negative child was left, updated as they move ahead
+		 * @param document the location ID to check
+		 * @return true if the location is excluded
+		 */
+		private static boolean isExcluded(Matches[] excluded, int[] skips, int document) {
+			for (int i = 0; i < excluded.length; i++) {
+				skips[i] = excluded[i].advance(skips[i], document);
+
+				if (skips[i] < excluded[i].size() && excluded[i].getDocument(skips[i]) == document) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder("(");
+
+			for (int i = 0; i < positives.size(); i++) {
+				builder.append(i == 0 ? "" : " AND ").append(positives.get(i));
+			}
+
+			for (Node negative : negatives) {
+				builder.append(builder.length() > 1 ? " NOT " : "NOT ").append(negative);
+			}
+			return builder.append(')').toString();
+		}
+	}
+
+	/**
+	 * Nested class that matches the locations that match any child.
+	 */
+	private static class Or extends Node {
+
+		/** The children any match must match. */
+		private final List<Node> children;
+
+		/**
+		 * Initializes the disjunction.
+		 *
+		 * @param children the children any match must match
+		 */
+		private Or(List<Node> children) {
+			this.children = children;
+		}
+
+		/**
+		 * Returns a disjunction of the children, or the only child if there is nothing to combine.
+		 *
+		 * @param children the children any match must match
+		 * @return the combined node, or null if there are no children
+		 */
+		public static Node of(List<Node> children) {
+			if (children.isEmpty()) {
+				return null;
+			}
+			return children.size() == 1 ? children.get(0) : new Or(children);
+		}
+
+		/**
+		 * Adds up the counts of every child into accumulators indexed by location ID. A
+		 * location may match with a count of zero, so matches are marked separately.
+		 */
+		@Override
+		public Matches evaluate(InvertedIndex index, int documents) {
+			Matches[] lists = new Matches[children.size()];
+			int last = -1;
+
+			for (int i = 0; i < lists.length; i++) {
+				lists[i] = children.get(i).evaluate(index, documents);
+
+				if (lists[i].size() > 0) {
+					last = Math.max(last, lists[i].getDocument(lists[i].size() - 1));
+				}
+			}
+
+			int[] accumulators = new int[last + 1];
+			boolean[] matched = new boolean[last + 1];
+			int size = 0;
+
+			for (Matches matches : lists) {
+				for (int i = 0; i < matches.size(); i++) {
+					int document = matches.getDocument(i);
+
+					size += matched[document] ? 0 : 1;
+					matched[document] = true;
+					accumulators[document] += matches.getCount(i);
+				}
+			}
+
+			ArrayMatches found = new ArrayMatches(size);
+
+			for (int id = 0; id < accumulators.length; id++) {
+				if (matched[id]) {
+					found.add(id, accumulators[id]);
+				}
+			}
+			return found;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder("(");
+
+			for (int i = 0; i < children.size(); i++) {
+				builder.append(i == 0 ? "" : " OR ").append(children.get(i));
+			}
+			return builder.append(')').toString();
+		}
+	}
+
+	/**
+	 * Nested class that is a list of matching locations sorted by location ID, with the
+	 * number of times the query words appear in each.
+	 */
+	private abstract static class Matches {
+
+		/** The matches of a node that matches nothing. */
+		public static final Matches EMPTY = new ArrayMatches(0);
+
+		/**
+		 * Returns the number of matching locations.
+		 *
+		 * @return the number of locations
+		 */
+		public abstract int size();
+
+		/**
+		 * Returns the location ID at the given index.
+		 *
+		 * @param index the index of the location
+		 * @return the location ID
+		 */
+		public abstract int getDocument(int index);
+
+		/**
+		 * Returns the number of times the query words appear in the location at the given index.
+		 *
+		 * @param index the index of the location
+		 * @return the count of the location
+		 */
+		public abstract int getCount(int index);
+
+		/**
+		 * Returns the index of the first location with an ID of at least the given one,
+		 * starting from the given index.
+		 *
+		 * @param index the index to start from
+		 * @param document the location ID to find
+		 * @return the index of the first location with at least the given ID, or the size if none
+		 */
+		public abstract int advance(int index, int document);
+	}
+
+	/**
+	 * Nested class that matches the postings of a word, skipping through them by galloping.
+	 */
+	private static class PostingMatches extends Matches {
+
+		/** The postings of the word. */
+		private final Postings postings;
+
+		/**
+		 * Initializes the matches.
+		 *
+		 * @param postings the postings of the word
+		 */
+		public PostingMatches(Postings postings) {
+			this.postings = postings;
+		}
+
+		@Override
+		public int size() {
+			return postings.size();
+		}
+
+		@Override
+		public int getDocument(int index) {
+			return postings.getDocument(index);
+		}
+
+		@Override
+		public int getCount(int index) {
+			return postings.getFrequency(index);
+		}
+
+		@Override
+		public int advance(int index, int document) {
+			return postings.advance(index, document);
+		}
+	}
+
+	/**
+	 * Nested class that matches every location with a count of zero, leading a conjunction
+	 * that only has negative children.
+	 */
+	private static class AllMatches extends Matches {
+
+		/** The number of locations in the index. */
+		private final int documents;
+
+		/**
+		 * Initializes the matches.
+		 *
+		 * @param documents the number of locations in the index
+		 */
+		public AllMatches(int documents) {
+			this.documents = documents;
+		}
+
+		@Override
+		public int size() {
+			return documents;
+		}
+
+		@Override
+		public int getDocument(int index) {
+			return index;
+		}
+
+		@Override
+		public int getCount(int index) {
+			return 0;
+		}
+
+		@Override
+		public int advance(int index, int document) {
+			return Math.min(Math.max(index, document), documents);
+		}
+	}
+
+	/**
+	 * Nested class that stores matches computed by a conjunction or disjunction.
+	 */
+	private static class ArrayMatches extends Matches {
+
+		/** The matching location IDs, in ascending order. */
+		private int[] documents;
+
+		/** The count of each matching location. */
+		private int[] counts;
+
+		/** The number of matching locations. */
+		private int size;
+
+		/**
+		 * Initializes empty matches.
+		 *
+		 * @param capacity the expected number of matches
+		 */
+		public ArrayMatches(int capacity) {
+			this.documents = new int[Math.max(capacity, 1)];
+			this.counts = new int[documents.length];
+			this.size = 0;
+		}
+
+		/**
+		 * Adds a match after every match so far.
+		 *
+		 * @param document the location ID, larger than any added so far
+		 * @param count the count of the location
+		 */
+		public void add(int document, int count) {
+			if (size == documents.length) {
+				documents = Arrays.copyOf(documents, size * 2);
+				counts = Arrays.copyOf(counts, size * 2);
+			}
+			documents[size] = document;
+			counts[size] = count;
+			size++;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int getDocument(int index) {
+			return documents[index];
+		}
+
+		@Override
+		public int getCount(int index) {
+			return counts[index];
+		}
+
+		@Override
+		public int advance(int index, int document) {
+			return PostingList.gallop(documents, index, size, document);
+		}
+	}
+}
@@ -2,13 +2,22 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Utility class for traversing a directory and adding all the text
  * files into a list.
  *
+ * Directories may also be traversed in parallel, where each subdirectory is listed by
+ * its own task and every text file is passed on as soon as it is found, so work on the
+ * first files can start long before the traversal ends. Listing directories blocks on
+ * the disk, and the action may block as well, so each parallel traversal runs on a
+ * fork/join pool of its own instead of tying up the threads of the common pool.
+ *
  * @author CS 212 Software Development
  * @author University of San Francisco
  * @version Fall 2019
@@ -28,6 +37,47 @@ public class DirectoryTraverser {
 		return allFiles;
 	}
 	
+	/**
+	 * Traverses a given path in parallel with one thread per available processor.
+	 *
+	 * @param path the path to traverse
+	 * @param action the action to pass each text file to
+	 * @throws IOException if unable to access a directory, or if the action throws one;
+	 *   the action may already have been called for other files
+	 *
+	 * @see #traverseDirectory(Path, Action, int)
+	 */
+	public static void traverseDirectory(Path path, Action action) throws IOException {
+		traverseDirectory(path, action, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Traverses a given path in parallel and passes each text file to the action as soon
+	 * as it is found. Every subdirectory is listed by its own task on a fork/join pool of
+	 * the given number of threads that is shut down afterwards, so the action may be
+	 * called from several threads at once and must be thread-safe. Files are passed in no
+	 * particular order.
+	 *
+	 * @param path the path to traverse
+	 * @param action the action to pass each text file to
+	 * @param threads the number of threads listing directories, at least 1
+	 * @throws IOException if unable to access a directory, or if the action throws one;
+	 *   the action may already have been called for other files
+	 */
+	public static void traverseDirectory(Path path, Action action, int threads) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+
+		try {
+			pool.invoke(new TraverseTask(path, action));
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
 	/**
 	 * Traverses through given path and adds text files to list.
 	 * 
@@ -65,4 +115,84 @@ public class DirectoryTraverser {
 		// Returns true if file is a text file.
 		return (name.endsWith(".txt") || name.endsWith(".text"));
 	}
-}
\ No newline at end of file
+
+	/**
+	 * An action that is passed each text file found by a parallel traversal.
+	 *
+	 * @see DirectoryTraverser#traverseDirectory(Path, Action)
+	 */
+	@FunctionalInterface
+	public interface Action {
+
+		/**
+		 * Performs the action on a text file.
+		 *
+		 * @param file the text file found
+		 * @throws IOException if unable to perform the action
+		 */
+		public void accept(Path file) throws IOException;
+	}
+
+	/**
+	 * Lists one directory, forking a task for each subdirectory as soon as it is found.
+	 */
+	private static class TraverseTask extends RecursiveAction {
+
+		/** Unused ID for serialization. */
+		private static final long serialVersionUID = 1L;
+
+		/** The path to traverse. */
+		private final Path path;
+
+		/** The action to pass each text file to. */
+		private final transient Action action;
+
+		/**
+		 * Initializes the task.
+		 *
+		 * @param path the path to traverse
+		 * @param action the action to pass each text file to
+		 */
+		public TraverseTask(Path path, Action action) {
+			this.path = path;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				if (!Files.isDirectory(path)) {
+					// Only passes on text files.
+					if (isTextFile(path)) {
+						action.accept(path);
+					}
+					return;
+				}
+
+				List<TraverseTask> subdirectories = new ArrayList<>();
+
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+
+					for (Path entry : stream) {
+						if (Files.isDirectory(entry)) {
+							// Lets another thread list the subdirectory while this one keeps going.
+							TraverseTask task = new TraverseTask(entry, action);
+							task.fork();
+							subdirectories.add(task);
+						}
+						else if (isTextFile(entry)) {
+							action.accept(entry);
+						}
+					}
+				}
+
+				for (TraverseTask task : subdirectories) {
+					task.join();
+				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
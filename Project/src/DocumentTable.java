@@ -0,0 +1,112 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Data structure class that assigns each location a dense integer ID, starting at 0,
+ * and maps those IDs back to their locations.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class DocumentTable {
+
+	/** Stores the locations in the order their IDs were assigned. **/
+	private final ArrayList<String> locations;
+
+	/** Stores arguments in key = value pairs regarding location IDs. **/
+	private final HashMap<String, Integer> ids;
+
+	/**
+	 * Initializes the document table.
+	 */
+	public DocumentTable() {
+		locations = new ArrayList<>();
+		ids = new HashMap<>();
+	}
+
+	/**
+	 * Initializes a copy of the other document table, which assigns the same IDs.
+	 *
+	 * @param other the document table to copy
+	 */
+	public DocumentTable(DocumentTable other) {
+		locations = new ArrayList<>(other.locations);
+		ids = new HashMap<>(other.ids);
+	}
+
+	/**
+	 * Returns the ID of the given location, assigning the next available ID if the
+	 * location is not already in the table.
+	 *
+	 * @param location the location to add
+	 * @return the ID of the location
+	 */
+	public int add(String location) {
+		Integer id = ids.get(location);
+
+		if (id == null) {
+			id = locations.size();
+			locations.add(location);
+			ids.put(location, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the ID of the given location.
+	 *
+	 * @param location the location to get the ID of
+	 * @return the ID of the location, or -1 if the location is not in the table
+	 */
+	public int getId(String location) {
+		Integer id = ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the location with the given ID.
+	 *
+	 * @param id the ID of the location
+	 * @return the location mapped to the ID
+	 */
+	public String getLocation(int id) {
+		return locations.get(id);
+	}
+
+	/**
+	 * Returns true if the table contains the given location.
+	 *
+	 * @param location the location to verify is in the table
+	 * @return true if the location has an ID
+	 */
+	public boolean contains(String location) {
+		return ids.containsKey(location);
+	}
+
+	/**
+	 * Returns the number of locations in the table.
+	 *
+	 * @return number of locations
+	 */
+	public int size() {
+		return locations.size();
+	}
+
+	/**
+	 * Returns an unmodifiable sorted set of the locations in the table.
+	 *
+	 * @return unmodifiable set of Strings
+	 */
+	public Set<String> getLocations() {
+		return Collections.unmodifiableSet(new TreeSet<>(locations));
+	}
+
+	@Override
+	public String toString() {
+		return locations.toString();
+	}
+}
@@ -1,5 +1,6 @@
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 /**
@@ -27,12 +28,10 @@ public class Driver {
 		IndexBuilder builder;
 		SearchBuilderInterface searchBuilder;
 		WorkQueue queue = null;
+		PipelinedIndexBuilder pipeline = null;
 
 		// Enables multithreading for specific arguments.
 		if (parser.hasFlag("-threads") || parser.hasFlag("-url") || parser.hasFlag("-port")) {
-	 		ThreadSafeIndex  threadSafe = new ThreadSafeIndex();
-	 		index = threadSafe;
-
 	 		if (parser.hasFlag("-threads")) {
 	 			String threads = parser.getString("-threads", "5");
 
@@ -53,16 +52,84 @@ public class Driver {
 	 			queue = new WorkQueue(5);
 	 		}
 
-	 		builder = new MultithreadedIndexBuilder(threadSafe, queue);
-	 		searchBuilder = new MultithreadedSearchBuilder(threadSafe, queue);
+	 		if (parser.hasFlag("-url")) {
+	 			// Crawler threads add each page as a batch, which locks only the shards of its words, one at a time.
+	 			index = new ShardedIndex();
+	 		}
+	 		else {
+	 			// Workers add their files as segments instead of merging under one lock.
+	 			index = new SegmentedIndex(queue);
+	 		}
+
+	 		if (parser.hasFlag("-pipeline") && queue != null) {
+	 			int capacity = PipelinedIndexBuilder.CAPACITY;
+
+	 			try {
+	 				// Bounds the number of files and local indexes waiting between stages.
+	 				capacity = Integer.parseInt(parser.getString("-pipeline", String.valueOf(capacity)));
+
+	 				if (capacity <= 0) {
+	 					capacity = PipelinedIndexBuilder.CAPACITY;
+	 				}
+	 			}
+	 			catch (NumberFormatException e) {
+	 				System.err.println("Please enter a valid argument for the pipeline queue capacity.");
+	 			}
+
+	 			int readers = PipelinedIndexBuilder.READERS;
+	 			int mergers = PipelinedIndexBuilder.MERGERS;
+
+	 			try {
+	 				// Sizes the reading and merging stages, such as more readers for slow disks.
+	 				readers = Integer.parseInt(parser.getString("-pipeline-readers", String.valueOf(readers)));
+	 				mergers = Integer.parseInt(parser.getString("-pipeline-mergers", String.valueOf(mergers)));
+	 			}
+	 			catch (NumberFormatException e) {
+	 				System.err.println("Please enter a valid argument for the number of pipeline threads.");
+	 			}
+
+	 			// Reads, stems, and merges files in separate stages so slow disks and stemming overlap.
+	 			// Stems on the main work queue, which is otherwise idle while the index is built.
+	 			pipeline = new PipelinedIndexBuilder(index,
+	 					new WorkQueue(readers > 0 ? readers : PipelinedIndexBuilder.READERS, capacity), queue,
+	 					new WorkQueue(mergers > 0 ? mergers : PipelinedIndexBuilder.MERGERS, capacity), capacity);
+
+	 			builder = pipeline;
+	 		}
+	 		else {
+	 			builder = new MultithreadedIndexBuilder(index, queue);
+	 		}
 	 	}
 	 	else {
 	 		index = new InvertedIndex();
 	 		builder = new IndexBuilder(index);
-	 		searchBuilder = new SearchBuilder(index);
 	 	}
 
-		if (parser.hasFlag("-url")) {
+		if (parser.hasFlag("-chunk-size")) {
+			try {
+				// Splits files larger than this many bytes into chunks indexed by separate threads.
+				MultithreadedIndexBuilder.setChunkSize(Integer.parseInt(
+						parser.getString("-chunk-size", String.valueOf(MultithreadedIndexBuilder.CHUNK_SIZE))));
+			}
+			catch (NumberFormatException e) {
+				System.err.println("Please enter a valid argument for the chunk size.");
+			}
+		}
+
+		FrozenIndex snapshot = null;
+		Path snapshotPath = parser.getPath("-snapshot", Path.of("index.snapshot"));
+
+		if (snapshotPath != null && Files.isRegularFile(snapshotPath)) {
+			try {
+				// Restores the index from the snapshot instead of rebuilding it.
+				snapshot = IndexSnapshot.read(snapshotPath);
+			}
+			catch (IOException e) {
+				System.err.println("Unable to load the index snapshot at: \n" + snapshotPath);
+			}
+		}
+
+		if (snapshot == null && parser.hasFlag("-url")) {
 	 		String seed = parser.getString("-url");
 
 	 		try {
@@ -89,6 +156,123 @@ public class Driver {
 			}
 	 	}
 
+		if (snapshot == null && parser.hasFlag("-path")) {
+			Path path = parser.getPath("-path");
+
+			try {
+				// Builds index and the word counts after traversing the given path.
+				builder.buildIndex(path);
+
+				if (pipeline != null && parser.hasFlag("-pipeline-stats")) {
+					// Shows how busy each stage was, to tune the threads and capacity of the pipeline.
+					System.err.println(pipeline);
+				}
+			}
+			catch (NullPointerException e) {
+				System.err.println("Please enter a valid path argument.");
+			}
+			catch (IOException e) {
+				System.err.println("Unable to traverse and stem the given file(s) at: \n" + path);
+			}
+		}
+
+		if (parser.hasFlag("-load-segment")) {
+			Path segmentPath = parser.getPath("-load-segment", Path.of("index.segment"));
+
+			try {
+				// Serves the index directly from an existing memory-mapped segment file.
+				index = new IndexSegment(segmentPath);
+			}
+			catch (IOException e) {
+				System.err.println("Unable to open the index segment at: \n" + segmentPath);
+				index = index.freeze();
+			}
+		}
+		else if (snapshot != null) {
+			index = snapshot;
+		}
+		else {
+			// Replaces the index with a read-optimized snapshot now that building is finished.
+			index = index.freeze();
+
+			if (snapshotPath != null) {
+				try {
+					// Saves the index so later runs can restore it without rebuilding.
+					index.writeSnapshot(snapshotPath);
+				}
+				catch (IOException e) {
+					System.err.println("Unable to write the index snapshot to a file at: \n" + snapshotPath);
+				}
+			}
+		}
+
+		if (parser.hasFlag("-segment")) {
+			Path segmentPath = parser.getPath("-segment", Path.of("index.segment"));
+
+			try {
+				// Writes index as a binary segment file.
+				index.writeSegment(segmentPath);
+			}
+			catch (IOException e) {
+				System.err.println("Unable to write the index segment to a file at: \n" + segmentPath);
+			}
+		}
+
+		int limit = Integer.MAX_VALUE;
+
+		if (parser.hasFlag("-limit-results")) {
+			try {
+				// Keeps only the best search results of each query.
+				limit = Integer.parseInt(parser.getString("-limit-results", "10"));
+
+				if (limit <= 0) {
+					limit = Integer.MAX_VALUE;
+				}
+			}
+			catch (NumberFormatException e) {
+				System.err.println("Please enter a valid argument for the limit of search results.");
+			}
+		}
+
+		if (parser.hasFlag("-parallel-threshold")) {
+			try {
+				// Splits partial searches that expand to at least this many words across threads.
+				InvertedIndex.setParallelThreshold(Integer.parseInt(
+						parser.getString("-parallel-threshold", String.valueOf(InvertedIndex.PARALLEL_THRESHOLD))));
+			}
+			catch (NumberFormatException e) {
+				System.err.println("Please enter a valid argument for the parallel search threshold.");
+			}
+		}
+
+		int distance = 0;
+
+		if (parser.hasFlag("-fuzzy")) {
+			try {
+				// Matches words within this edit distance of the queries instead of exact or partial matches.
+				distance = Integer.parseInt(parser.getString("-fuzzy", "1"));
+
+				if (distance < 1 || distance > LevenshteinAutomaton.MAX_DISTANCE) {
+					throw new NumberFormatException();
+				}
+			}
+			catch (NumberFormatException e) {
+				System.err.println("Please enter a valid argument for the fuzzy search edit distance, from 1 to "
+						+ LevenshteinAutomaton.MAX_DISTANCE + ".");
+				distance = 0;
+			}
+		}
+
+		// Shares cached search results between the query file and the server.
+		QueryCache cache = new QueryCache(index);
+
+		if (queue != null) {
+			searchBuilder = new MultithreadedSearchBuilder(cache, queue, limit);
+		}
+		else {
+			searchBuilder = new SearchBuilder(cache, limit);
+		}
+
 		if (parser.hasFlag("-port")) {
 	 		String port = parser.getString("-port", "8080");
 
@@ -98,7 +282,7 @@ public class Driver {
 		 		if (num <= 0) {
 	 				num = 8080;
 	 			}
-		 		SearchServer server = new SearchServer(num, index);
+		 		SearchServer server = new SearchServer(num, index, cache);
 		 		server.initialize();
 			}
 	 		catch (NumberFormatException e) {
@@ -109,21 +293,6 @@ public class Driver {
 			}
 	 	}
 
-		if (parser.hasFlag("-path")) {
-			Path path = parser.getPath("-path");
-
-			try {
-				// Builds index and the word counts after traversing the given path.
-				builder.buildIndex(path);
-			}
-			catch (NullPointerException e) {
-				System.err.println("Please enter a valid path argument.");
-			}
-			catch (IOException e) {
-				System.err.println("Unable to traverse and stem the given file(s) at: \n" + path);
-			}
-		}
-
 		if (parser.hasFlag("-index")) {
 			Path indexPath = parser.getPath("-index", Path.of("index.json"));
 
@@ -153,7 +322,10 @@ public class Driver {
 
 			try {
 				// Builds query search results from file of queries.
-				searchBuilder.buildSearch(queryPath, parser.hasFlag("-exact"));
+				// Best results may be found with MaxScore retrieval when their number is limited, or ranked by BM25.
+				searchBuilder.buildSearch(queryPath, SearchOptions.PARTIAL.withExact(parser.hasFlag("-exact"))
+						.withMaxScore(parser.hasFlag("-maxscore")).withBm25(parser.hasFlag("-bm25")).withDistance(distance)
+						.withBoolean(parser.hasFlag("-boolean")).withPhrase(parser.hasFlag("-phrase")));
 			}
 			catch (NullPointerException e) {
 				System.err.println("Please enter a valid query argument.");
@@ -175,6 +347,14 @@ public class Driver {
 			}
 		}
 
+		if (pipeline != null) {
+			for (WorkQueue stage : pipeline.getStages()) {
+				if (stage != queue) {
+					stage.shutdown();
+				}
+			}
+		}
+
 		if (queue != null) {
 			queue.shutdown();
 		}
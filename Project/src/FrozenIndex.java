@@ -0,0 +1,721 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * An immutable, read-optimized snapshot of an {@link InvertedIndex} created by
+ * {@link InvertedIndex#freeze()}. Words are kept in a {@link TermDictionary}, the
+ * postings of every word in flat primitive arrays indexed by term ordinal, and the
+ * word count of every location in a primitive array. Lookups use binary search and
+ * need no locking, so a frozen index may be shared by any number of threads.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class FrozenIndex extends InvertedIndex {
+
+	/** Maps the words of the index to their term ordinals. */
+	private final TermDictionary words;
+
+	/** Stores where the postings of each word start, followed by the total number of postings. */
+	private final int[] starts;
+
+	/** Stores the location ID of each posting, sorted within each word. */
+	private final int[] documents;
+
+	/** Stores the number of positions of each posting. */
+	private final int[] frequencies;
+
+	/** Stores where the packed positions of each posting start. */
+	private final int[] offsets;
+
+	/** Stores the delta-encoded and packed positions of every posting. */
+	private final byte[] positions;
+
+	/** Stores the location of each location ID. */
+	private final String[] locations;
+
+	/** Stores the word count of each location ID. */
+	private final int[] counts;
+
+	/** Stores arguments in key = value pairs regarding location IDs. */
+	private final TreeMap<String, Integer> ids;
+
+	/** Caches the highest score any location gets from each word, or null until first needed. */
+	private volatile double[] bounds;
+
+	/** Stores the BM25 length norm of each location ID, added to each term frequency found in it. */
+	private final double[] norms;
+
+	/** Stores the BM25 weight of each word, its inverse document frequency times one more than {@link #K1}. */
+	private final double[] weights;
+
+	/** The BM25 parameter that controls how quickly repeated words stop adding to the score. */
+	public static final double K1 = 1.2;
+
+	/** The BM25 parameter that controls how much longer locations are penalized. */
+	public static final double B = 0.75;
+
+	/** The most words a MaxScore search walks at once before searching exhaustively instead. */
+	private static final int MAX_CURSORS = 16;
+
+	/** The relative slack allowed when comparing score bounds, to absorb rounding error. */
+	private static final double SLACK = 1e-9;
+
+	/**
+	 * Initializes a frozen index from its primitive arrays. The arrays are used
+	 * directly and must not be modified afterwards.
+	 *
+	 * @param words the sorted words
+	 * @param starts where the postings of each word start, plus the total number of postings
+	 * @param documents the location ID of each posting
+	 * @param frequencies the number of positions of each posting
+	 * @param offsets where the packed positions of each posting start
+	 * @param positions the packed positions of every posting
+	 * @param locations the location of each location ID
+	 * @param counts the word count of each location ID
+	 *
+	 * @see PostingList#writeVarInt(byte[], int, int)
+	 */
+	public FrozenIndex(String[] words, int[] starts, int[] documents, int[] frequencies,
+			int[] offsets, byte[] positions, String[] locations, int[] counts) {
+		super();
+		this.words = new TermDictionary(words);
+		this.starts = starts;
+		this.documents = documents;
+		this.frequencies = frequencies;
+		this.offsets = offsets;
+		this.positions = positions;
+		this.locations = locations;
+		this.counts = counts;
+		this.ids = new TreeMap<>();
+
+		for (int id = 0; id < locations.length; id++) {
+			ids.put(locations[id], id);
+		}
+
+		// Precomputes the BM25 norms, so scoring a posting only has to look them up.
+		long total = 0;
+
+		for (int count : counts) {
+			total += count;
+		}
+
+		double average = locations.length == 0 ? 1 : Math.max(total / (double) locations.length, 1);
+		this.norms = new double[locations.length];
+
+		for (int id = 0; id < norms.length; id++) {
+			norms[id] = K1 * (1 - B + B * counts[id] / average);
+		}
+
+		this.weights = new double[starts.length - 1];
+
+		for (int word = 0; word < weights.length; word++) {
+			int frequency = starts[word + 1] - starts[word];
+			double idf = Math.log(1 + (locations.length - frequency + 0.5) / (frequency + 0.5));
+			weights[word] = idf * (K1 + 1);
+		}
+	}
+
+	/**
+	 * Returns the term ordinal of the word.
+	 *
+	 * @param word the word to find
+	 * @return the term ordinal of the word, or -1 if the word is not in the index
+	 */
+	private int find(String word) {
+		return words.find(word);
+	}
+
+	/**
+	 * Returns the index of the posting of the given word and location ID.
+	 *
+	 * @param word the term ordinal of the word
+	 * @param id the location ID
+	 * @return the index of the posting if present, otherwise a negative number
+	 */
+	private int find(int word, int id) {
+		return Arrays.binarySearch(documents, starts[word], starts[word + 1], id);
+	}
+
+	/**
+	 * Returns the index of the posting of the given word and location.
+	 *
+	 * @param word the word of the posting
+	 * @param location the location of the posting
+	 * @return the index of the posting if present, otherwise a negative number
+	 */
+	private int find(String word, String location) {
+		int index = find(word);
+		Integer id = ids.get(location);
+		return (index < 0 || id == null) ? -1 : find(index, id);
+	}
+
+	@Override
+	public void addAll(InvertedIndex other) {
+		throw new UnsupportedOperationException("A frozen index cannot be modified.");
+	}
+
+	@Override
+	public void addAll(Collection<? extends InvertedIndex> others) {
+		throw new UnsupportedOperationException("A frozen index cannot be modified.");
+	}
+
+	@Override
+	public void add(String word, String path, Integer position) {
+		throw new UnsupportedOperationException("A frozen index cannot be modified.");
+	}
+
+	@Override
+	protected void addAll(Collection<? extends InvertedIndex> others, Predicate<String> words) {
+		throw new UnsupportedOperationException("A frozen index cannot be modified.");
+	}
+
+	@Override
+	protected void offsetPositions(int amount) {
+		throw new UnsupportedOperationException("A frozen index cannot be modified.");
+	}
+
+	@Override
+	public void seal() {
+		// Positions are always packed.
+	}
+
+	@Override
+	public FrozenIndex freeze() {
+		return this;
+	}
+
+	@Override
+	public void writeSegment(Path path) throws IOException {
+		IndexSegment.write(path, words.getTerms().toArray(new String[0]), starts, documents, frequencies,
+				offsets, positions, locations, counts);
+	}
+
+	@Override
+	public void writeSnapshot(Path path) throws IOException {
+		IndexSnapshot.write(path, words.getTerms().toArray(new String[0]), starts, documents, frequencies,
+				offsets, positions, locations, counts);
+	}
+
+	@Override
+	public void writeCounts(Path path) throws IOException {
+		TreeMap<String, Integer> countsMap = new TreeMap<>();
+
+		for (int id = 0; id < locations.length; id++) {
+			countsMap.put(locations[id], counts[id]);
+		}
+		JsonWriter.asObject(countsMap, path);
+	}
+
+	@Override
+	public Set<String> getPaths() {
+		return Collections.unmodifiableSet(ids.keySet());
+	}
+
+	@Override
+	public Integer getCount(String path) {
+		Integer id = ids.get(path);
+		return id == null ? null : counts[id];
+	}
+
+	@Override
+	public int getCount(int id) {
+		return counts[id];
+	}
+
+	/**
+	 * Returns the word counts of the index itself, which never change.
+	 */
+	@Override
+	protected int[] getCounts() {
+		return counts;
+	}
+
+	@Override
+	protected String[] lookupLocations(int[] ids, int size) {
+		String[] found = new String[size];
+
+		for (int i = 0; i < size; i++) {
+			found[i] = locations[ids[i]];
+		}
+		return found;
+	}
+
+	@Override
+	public String getLocation(int id) {
+		return locations[id];
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return Collections.unmodifiableSet(new LinkedHashSet<>(words.getTerms()));
+	}
+
+	@Override
+	public int countWords(String prefix) {
+		return words.count(prefix);
+	}
+
+	@Override
+	protected List<String> listWords(String prefix) {
+		int[] range = words.getRange(prefix);
+		List<String> found = new ArrayList<>(range[1] - range[0]);
+
+		for (int word = range[0]; word < range[1]; word++) {
+			found.add(words.get(word));
+		}
+		return found;
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		int index = find(word);
+
+		if (index < 0) {
+			return Collections.emptySet();
+		}
+
+		TreeSet<String> found = new TreeSet<>();
+
+		for (int i = starts[index]; i < starts[index + 1]; i++) {
+			found.add(locations[documents[i]]);
+		}
+		return Collections.unmodifiableSet(found);
+	}
+
+	@Override
+	public int[] getPositions(String word, String location) {
+		int posting = find(word, location);
+		return posting < 0 ? new int[0] : PostingList.unpack(positions, offsets[posting], frequencies[posting]);
+	}
+
+	@Override
+	public boolean containsCount(String path) {
+		return ids.containsKey(path);
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return find(word) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		return find(word, location) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location, Integer position) {
+		int posting = find(word, location);
+		return posting >= 0 && PostingList.containsPosition(positions, offsets[posting], frequencies[posting], position);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+
+		for (int word = 0; word < words.size(); word++) {
+			builder.append(word == 0 ? "" : ", ").append(words.get(word)).append("={");
+
+			for (int i = starts[word]; i < starts[word + 1]; i++) {
+				builder.append(i == starts[word] ? "" : ", ").append(documents[i]).append('=');
+				builder.append(Arrays.toString(PostingList.unpack(positions, offsets[i], frequencies[i])));
+			}
+			builder.append('}');
+		}
+		return builder.append('}').toString();
+	}
+
+	@Override
+	public List<SearchResult> search(Set<String> queries, boolean exactSearch, int k) {
+		int[] accumulators;
+
+		if (exactSearch) {
+			accumulators = new int[locations.length];
+
+			for (String query : queries) {
+				int word = find(query);
+
+				if (word >= 0) {
+					searchLocations(accumulators, word);
+				}
+			}
+		}
+		else {
+			List<int[]> ranges = new ArrayList<>(queries.size());
+
+			// Walks the term dictionary down to the range of words that start with each query.
+			for (String query : queries) {
+				ranges.add(words.getRange(query));
+			}
+			accumulators = accumulate(ranges, locations.length, this::searchLocations);
+		}
+
+		return selectTop(collectResults(accumulators, counts), k);
+	}
+
+	/**
+	 * Returns the best k search results using document-at-a-time MaxScore retrieval
+	 * when requested. Every word found gets a cursor over its postings, which are sorted
+	 * by location ID, and an upper bound on the score it can add to any location. Once k
+	 * results are found, the words whose bounds add up to less than the worst of them are
+	 * non-essential: locations are only considered if an essential word is found in them,
+	 * and are dropped as soon as the remaining bounds cannot lift them into the best k.
+	 * Returns the same results as the exhaustive search.
+	 *
+	 * @param queries the queries to search for
+	 * @param exactSearch the boolean to decide whether to perform partial or exact search
+	 * @param k the maximum number of search results to return
+	 * @param maxScore whether to use MaxScore retrieval
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<SearchResult> search(Set<String> queries, boolean exactSearch, int k, boolean maxScore) {
+		if (!maxScore || k <= 0 || k >= locations.length) {
+			return search(queries, exactSearch, k);
+		}
+
+		double[] bounds = getBounds();
+		List<Integer> found = new ArrayList<>();
+
+		for (String query : queries) {
+			if (exactSearch) {
+				int word = find(query);
+
+				if (word >= 0) {
+					found.add(word);
+				}
+			}
+			else {
+				// Keeps words matched by more than one query, since they are counted once per query.
+				int[] range = words.getRange(query);
+
+				for (int word = range[0]; word < range[1]; word++) {
+					found.add(word);
+				}
+			}
+		}
+
+		if (found.size() > MAX_CURSORS) {
+			// Merging the postings of many words costs more than adding them all up.
+			return search(queries, exactSearch, k);
+		}
+
+		// Orders the words by bound so the weakest become non-essential first.
+		found.sort(Comparator.comparingDouble(word -> bounds[word]));
+
+		Cursor[] cursors = new Cursor[found.size()];
+		double[] prefix = new double[cursors.length + 1];
+		PriorityQueue<Cursor> essential = new PriorityQueue<>(Math.max(cursors.length, 1));
+
+		for (int i = 0; i < cursors.length; i++) {
+			cursors[i] = new Cursor(found.get(i), i);
+			prefix[i + 1] = prefix[i] + bounds[found.get(i)];
+			essential.add(cursors[i]);
+		}
+
+		// Keeps the worst of the best results found so far at the head of the heap.
+		PriorityQueue<SearchResult> top = new PriorityQueue<>(k, Collections.reverseOrder());
+		double threshold = 0;
+		int pivot = 0;
+
+		while (!essential.isEmpty()) {
+			if (essential.peek().order < pivot) {
+				// Drops cursors of words that became non-essential.
+				essential.poll();
+				continue;
+			}
+
+			int id = essential.peek().document();
+			int count = 0;
+
+			// Consumes the postings of the location in every essential word.
+			while (!essential.isEmpty() && essential.peek().document() == id) {
+				Cursor cursor = essential.poll();
+
+				if (cursor.order >= pivot) {
+					count += frequencies[cursor.index];
+
+					if (++cursor.index < cursor.end) {
+						essential.add(cursor);
+					}
+				}
+			}
+
+			// Looks the location up in the non-essential words, strongest first, while it can still make it.
+			double length = counts[id];
+			boolean pruned = false;
+
+			for (int i = pivot - 1; i >= 0 && !pruned; i--) {
+				if (isBelow(count / length + prefix[i + 1], threshold)) {
+					pruned = true;
+				}
+				else if (cursors[i].advance(id)) {
+					count += frequencies[cursors[i].index];
+				}
+			}
+
+			if (pruned || (top.size() == k && count / length < threshold)) {
+				continue;
+			}
+
+			SearchResult result = new SearchResult(id, count, counts[id]);
+
+			if (top.size() < k) {
+				top.add(result);
+			}
+			else if (result.compareTo(top.peek()) < 0) {
+				top.poll();
+				top.add(result);
+			}
+			else {
+				continue;
+			}
+
+			if (top.size() == k) {
+				threshold = top.peek().getScore();
+
+				while (pivot < cursors.length && isBelow(prefix[pivot + 1], threshold)) {
+					pivot++;
+				}
+			}
+		}
+
+		List<SearchResult> results = new ArrayList<>(top);
+		Collections.sort(results);
+		return results;
+	}
+
+	@Override
+	protected Postings getPostings(String word) {
+		int found = find(word);
+		return found < 0 ? null : new WordPostings(found);
+	}
+
+	/**
+	 * Returns the highest score any location gets from each word, computing them the
+	 * first time they are needed.
+	 *
+	 * @return the score bound of each word, indexed by term ordinal
+	 */
+	private double[] getBounds() {
+		double[] current = bounds;
+
+		if (current == null) {
+			current = new double[words.size()];
+
+			for (int word = 0; word < current.length; word++) {
+				for (int i = starts[word]; i < starts[word + 1]; i++) {
+					current[word] = Math.max(current[word], frequencies[i] / (double) counts[documents[i]]);
+				}
+			}
+			bounds = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Returns whether a score bound is certainly below the threshold, allowing for the
+	 * rounding error of adding bounds together.
+	 *
+	 * @param bound the score bound
+	 * @param threshold the score to compare against
+	 * @return true if the bound is below the threshold
+	 */
+	private static boolean isBelow(double bound, double threshold) {
+		return bound * (1 + SLACK) < threshold;
+	}
+
+	@Override
+	public List<SearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		List<int[]> ranges = new ArrayList<>();
+
+		// Intersects an automaton of each query with the term dictionary.
+		for (String query : queries) {
+			addWords(ranges, words.fuzzy(new LevenshteinAutomaton(query, distance)));
+		}
+
+		int[] accumulators = accumulate(ranges, locations.length, this::searchLocations);
+		return selectTop(collectResults(accumulators, counts), k);
+	}
+
+	/**
+	 * Ranks the search results by BM25 using the norms and weights precomputed when the
+	 * index was frozen. Words matched by more than one query are counted once per query,
+	 * just like the default ranking.
+	 */
+	@Override
+	public List<SearchResult> bm25Search(Set<String> queries, boolean exactSearch, int k) {
+		int[] accumulators = new int[locations.length];
+		double[] scores = new double[locations.length];
+
+		for (String query : queries) {
+			if (exactSearch) {
+				int word = find(query);
+
+				if (word >= 0) {
+					scoreLocations(accumulators, scores, word);
+				}
+			}
+			else {
+				int[] range = words.getRange(query);
+
+				for (int word = range[0]; word < range[1]; word++) {
+					scoreLocations(accumulators, scores, word);
+				}
+			}
+		}
+
+		List<SearchResult> results = new ArrayList<>();
+
+		for (int id = 0; id < accumulators.length; id++) {
+			if (accumulators[id] > 0) {
+				results.add(new SearchResult(id, accumulators[id], scores[id]));
+			}
+		}
+		return selectTop(results, k);
+	}
+
+	/**
+	 * Adds the frequencies of every posting of the given word to the counts of its
+	 * locations, and the BM25 score of each posting to the scores of its locations.
+	 *
+	 * @param accumulators the counts of the search results, indexed by location ID
+	 * @param scores the BM25 scores of the search results, indexed by location ID
+	 * @param word the term ordinal of the word found
+	 */
+	private void scoreLocations(int[] accumulators, double[] scores, int word) {
+		double weight = weights[word];
+
+		for (int i = starts[word]; i < starts[word + 1]; i++) {
+			int frequency = frequencies[i];
+			accumulators[documents[i]] += frequency;
+			scores[documents[i]] += weight * frequency / (frequency + norms[documents[i]]);
+		}
+	}
+
+	/**
+	 * Adds the frequencies of every posting of the given word to the counts of its locations.
+	 *
+	 * @param accumulators the counts of the search results, indexed by location ID
+	 * @param word the term ordinal of the word found
+	 */
+	private void searchLocations(int[] accumulators, int word) {
+		for (int i = starts[word]; i < starts[word + 1]; i++) {
+			accumulators[documents[i]] += frequencies[i];
+		}
+	}
+
+	/**
+	 * Nested class that views the postings of one word in the flat arrays.
+	 */
+	private class WordPostings implements Postings {
+
+		/** The index of the first posting of the word. */
+		private final int start;
+
+		/** The number of postings of the word. */
+		private final int size;
+
+		/**
+		 * Initializes a view of the postings of the word.
+		 *
+		 * @param word the term ordinal of the word
+		 */
+		public WordPostings(int word) {
+			this.start = starts[word];
+			this.size = starts[word + 1] - start;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int getDocument(int index) {
+			return documents[start + index];
+		}
+
+		@Override
+		public int getFrequency(int index) {
+			return frequencies[start + index];
+		}
+
+		@Override
+		public int[] getPositions(int index) {
+			return PostingList.unpack(positions, offsets[start + index], frequencies[start + index]);
+		}
+
+		@Override
+		public int advance(int index, int document) {
+			return PostingList.gallop(documents, start + index, start + size, document) - start;
+		}
+	}
+
+	/**
+	 * Nested class that walks the postings of one word in location ID order.
+	 */
+	private class Cursor implements Comparable<Cursor> {
+
+		/** The position of the word when the words are sorted by score bound. */
+		private final int order;
+
+		/** The index of the current posting. */
+		private int index;
+
+		/** The index after the last posting of the word. */
+		private final int end;
+
+		/**
+		 * Initializes a cursor at the first posting of the word.
+		 *
+		 * @param word the term ordinal of the word
+		 * @param order the position of the word when sorted by score bound
+		 */
+		public Cursor(int word, int order) {
+			this.order = order;
+			this.index = starts[word];
+			this.end = starts[word + 1];
+		}
+
+		/**
+		 * Returns the location ID of the current posting.
+		 *
+		 * @return the location ID
+		 */
+		public int document() {
+			return documents[index];
+		}
+
+		/**
+		 * Moves to the first posting with a location ID of at least the given one, galloping
+		 * ahead and then binary searching.
+		 *
+		 * @param document the location ID to move to
+		 * @return true if the word has a posting for the location
+		 */
+		public boolean advance(int document) {
+			index = PostingList.gallop(documents, index, end, document);
+			return index < end && documents[index] == document;
+		}
+
+		@Override
+		public int compareTo(Cursor other) {
+			return Integer.compare(document(), other.document());
+		}
+	}
+}
@@ -55,6 +55,7 @@ public class IndexBuilder {
 		for (Path item : files) {
 			addPath (item);
 		}
+		index.seal();
 	}
 
 	/**
@@ -67,7 +68,8 @@ public class IndexBuilder {
 	public static void addPath (Path path, InvertedIndex index) throws IOException {
 		int positionCount = 0;
 
-		Stemmer stemmer = new SnowballStemmer(DEFAULT);
+		Stemmer stemmer = StemCache.get();
+		TextTokenizer tokenizer = new TextTokenizer();
 		String location = path.toString();
 
 		// Reads text file line by line.
@@ -78,11 +80,11 @@ public class IndexBuilder {
 
 			while ((line = reader.readLine()) != null) {
 				// Parses line and updates word count of text file.
-				String[] parsedLine = TextParser.parse(line);
+				tokenizer.reset(line);
 
 				// Stems word and adds each word to index with associated position.
-				for (String word : parsedLine) {
-					String stemmedWord = stemmer.stem(word).toString();
+				while (tokenizer.next()) {
+					String stemmedWord = stemmer.stem(tokenizer.token()).toString();
 					index.add(stemmedWord, location, ++positionCount);
 				}
 			}
@@ -0,0 +1,793 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * A read-only {@link InvertedIndex} served directly from a memory-mapped segment
+ * file, so the index lives in the operating system page cache instead of the heap.
+ * Segment files are written by {@link InvertedIndex#writeSegment(Path)}.
+ *
+ * A segment file starts with a header of big-endian ints: the magic number, the
+ * version, the number of words, postings, and locations, and the byte offset of each
+ * of the following sections:
+ *
+ * <ol>
+ * <li>word offsets: where the characters of each word start, plus the total</li>
+ * <li>starts: where the postings of each word start, plus the total</li>
+ * <li>documents: the location ID of each posting, sorted within each word</li>
+ * <li>frequencies: the number of positions of each posting</li>
+ * <li>position offsets: where the packed positions of each posting start, plus the total</li>
+ * <li>counts: the word count of each location</li>
+ * <li>location offsets: where the bytes of each location start, plus the total</li>
+ * <li>word characters: the UTF-16 characters of the sorted words</li>
+ * <li>location bytes: the UTF-8 bytes of the sorted locations</li>
+ * <li>positions: the delta-encoded and packed positions of every posting</li>
+ * </ol>
+ *
+ * Location IDs are assigned in sorted order of the locations, so both words and
+ * locations are found by binary search without loading them onto the heap. Segments
+ * are limited to 2 GB.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class IndexSegment extends InvertedIndex {
+
+	/** The magic number that starts every segment file ("SEG1"). */
+	public static final int MAGIC = 0x53454731;
+
+	/** The version of the segment file format. */
+	public static final int VERSION = 1;
+
+	/** The number of ints in the header. */
+	private static final int HEADER = 15;
+
+	/** The memory-mapped segment file. */
+	private final MappedByteBuffer buffer;
+
+	/** The number of words in the segment. */
+	private final int wordCount;
+
+	/** The number of locations in the segment. */
+	private final int documentCount;
+
+	/** The byte offset of the word offsets section. */
+	private final int wordOffsets;
+
+	/** The byte offset of the starts section. */
+	private final int starts;
+
+	/** The byte offset of the documents section. */
+	private final int documents;
+
+	/** The byte offset of the frequencies section. */
+	private final int frequencies;
+
+	/** The byte offset of the position offsets section. */
+	private final int positionOffsets;
+
+	/** The byte offset of the counts section. */
+	private final int counts;
+
+	/** The byte offset of the location offsets section. */
+	private final int locationOffsets;
+
+	/** The byte offset of the word characters section. */
+	private final int wordChars;
+
+	/** The byte offset of the location bytes section. */
+	private final int locationBytes;
+
+	/** The byte offset of the positions section. */
+	private final int positions;
+
+	/**
+	 * Opens and memory-maps a segment file.
+	 *
+	 * @param path the segment file to open
+	 * @throws IOException if unable to read the file or it is not a valid segment
+	 */
+	public IndexSegment(Path path) throws IOException {
+		super();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE || channel.size() < HEADER * 4) {
+				throw new IOException("Invalid segment size: " + channel.size());
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("Not a version " + VERSION + " segment file: " + path);
+		}
+
+		wordCount = buffer.getInt(8);
+		documentCount = buffer.getInt(16);
+		wordOffsets = buffer.getInt(20);
+		starts = buffer.getInt(24);
+		documents = buffer.getInt(28);
+		frequencies = buffer.getInt(32);
+		positionOffsets = buffer.getInt(36);
+		counts = buffer.getInt(40);
+		locationOffsets = buffer.getInt(44);
+		wordChars = buffer.getInt(48);
+		locationBytes = buffer.getInt(52);
+		positions = buffer.getInt(56);
+	}
+
+	/**
+	 * Writes the arrays of a frozen index as a segment file. Locations are given new
+	 * IDs in sorted order and the postings of each word are reordered to match.
+	 *
+	 * @param path the path to write the segment to
+	 * @param words the sorted words
+	 * @param starts where the postings of each word start, plus the total number of postings
+	 * @param documents the location ID of each posting
+	 * @param frequencies the number of positions of each posting
+	 * @param offsets where the packed positions of each posting start
+	 * @param positions the packed positions of every posting
+	 * @param locations the location of each location ID
+	 * @param counts the word count of each location ID
+	 * @throws IOException if unable to write the file or the segment would exceed 2 GB
+	 *
+	 * @see FrozenIndex#writeSegment(Path)
+	 */
+	public static void write(Path path, String[] words, int[] starts, int[] documents, int[] frequencies,
+			int[] offsets, byte[] positions, String[] locations, int[] counts) throws IOException {
+
+		// Assigns new location IDs in sorted order of the locations.
+		Integer[] order = new Integer[locations.length];
+
+		for (int id = 0; id < order.length; id++) {
+			order[id] = id;
+		}
+		Arrays.sort(order, (a, b) -> locations[a].compareTo(locations[b]));
+
+		int[] remap = new int[order.length];
+
+		for (int id = 0; id < order.length; id++) {
+			remap[order[id]] = id;
+		}
+
+		// Reorders the postings of each word by their new location IDs.
+		int[] sortedDocuments = new int[documents.length];
+		int[] sortedFrequencies = new int[frequencies.length];
+		int[] sortedOffsets = new int[offsets.length];
+		byte[] sortedPositions = new byte[positions.length];
+
+		for (int word = 0; word < words.length; word++) {
+			long[] keys = new long[starts[word + 1] - starts[word]];
+
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = ((long) remap[documents[starts[word] + i]] << 32) | (starts[word] + i);
+			}
+			Arrays.sort(keys);
+
+			for (int i = 0, posting = starts[word]; i < keys.length; i++, posting++) {
+				int original = (int) keys[i];
+				int length = offsets[original + 1] - offsets[original];
+
+				sortedDocuments[posting] = (int) (keys[i] >>> 32);
+				sortedFrequencies[posting] = frequencies[original];
+				System.arraycopy(positions, offsets[original], sortedPositions, sortedOffsets[posting], length);
+				sortedOffsets[posting + 1] = sortedOffsets[posting] + length;
+			}
+		}
+
+		byte[][] locationData = new byte[locations.length][];
+		long locationLength = 0;
+
+		for (int id = 0; id < order.length; id++) {
+			locationData[id] = locations[order[id]].getBytes(StandardCharsets.UTF_8);
+			locationLength += locationData[id].length;
+		}
+
+		long wordLength = 0;
+
+		for (String word : words) {
+			wordLength += word.length();
+		}
+
+		// Computes the byte offset of each section.
+		long[] sections = new long[11];
+		sections[0] = HEADER * 4;
+		sections[1] = sections[0] + 4L * (words.length + 1);
+		sections[2] = sections[1] + 4L * (words.length + 1);
+		sections[3] = sections[2] + 4L * documents.length;
+		sections[4] = sections[3] + 4L * documents.length;
+		sections[5] = sections[4] + 4L * (documents.length + 1);
+		sections[6] = sections[5] + 4L * locations.length;
+		sections[7] = sections[6] + 4L * (locations.length + 1);
+		sections[8] = sections[7] + 2L * wordLength;
+		sections[9] = sections[8] + locationLength;
+		sections[10] = sections[9] + sortedOffsets[documents.length];
+
+		if (sections[10] > Integer.MAX_VALUE) {
+			throw new IOException("Segment would exceed 2 GB: " + sections[10]);
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(words.length);
+			out.writeInt(documents.length);
+			out.writeInt(locations.length);
+
+			for (int i = 0; i < 10; i++) {
+				out.writeInt((int) sections[i]);
+			}
+
+			int wordOffset = 0;
+			out.writeInt(wordOffset);
+
+			for (String word : words) {
+				wordOffset += word.length();
+				out.writeInt(wordOffset);
+			}
+
+			writeInts(out, starts);
+			writeInts(out, sortedDocuments);
+			writeInts(out, sortedFrequencies);
+			writeInts(out, sortedOffsets);
+
+			for (int id = 0; id < order.length; id++) {
+				out.writeInt(counts[order[id]]);
+			}
+
+			int locationOffset = 0;
+			out.writeInt(locationOffset);
+
+			for (byte[] location : locationData) {
+				locationOffset += location.length;
+				out.writeInt(locationOffset);
+			}
+
+			for (String word : words) {
+				out.writeChars(word);
+			}
+
+			for (byte[] location : locationData) {
+				out.write(location);
+			}
+
+			out.write(sortedPositions, 0, sortedOffsets[documents.length]);
+		}
+	}
+
+	/**
+	 * Writes every element of the array as a big-endian int.
+	 *
+	 * @param out the stream to write to
+	 * @param elements the elements to write
+	 * @throws IOException if unable to write
+	 */
+	private static void writeInts(DataOutputStream out, int[] elements) throws IOException {
+		for (int element : elements) {
+			out.writeInt(element);
+		}
+	}
+
+	/**
+	 * Returns the int at the given index of a section of ints.
+	 *
+	 * @param section the byte offset of the section
+	 * @param index the index of the int
+	 * @return the int
+	 */
+	private int getInt(int section, int index) {
+		return buffer.getInt(section + 4 * index);
+	}
+
+	/**
+	 * Compares the word with the given ordinal to the text, as {@link String#compareTo(String)} would.
+	 *
+	 * @param word the ordinal of the word
+	 * @param text the text to compare to
+	 * @param prefix whether words that start with the text compare as equal
+	 * @return a negative int, zero, or a positive int as the word is less than, equal to, or greater than the text
+	 */
+	private int compare(int word, String text, boolean prefix) {
+		int start = getInt(wordOffsets, word);
+		int length = getInt(wordOffsets, word + 1) - start;
+
+		for (int i = 0; i < length && i < text.length(); i++) {
+			char current = buffer.getChar(wordChars + 2 * (start + i));
+
+			if (current != text.charAt(i)) {
+				return current - text.charAt(i);
+			}
+		}
+		return (prefix && length >= text.length()) ? 0 : length - text.length();
+	}
+
+	/**
+	 * Returns the first word ordinal that compares greater than or equal to the text,
+	 * or greater than the text if strict.
+	 *
+	 * @param text the text to compare to
+	 * @param prefix whether words that start with the text compare as equal
+	 * @param strict whether to find the first word that is strictly greater
+	 * @return the ordinal found, or the number of words if there is none
+	 */
+	private int search(String text, boolean prefix, boolean strict) {
+		int low = 0;
+		int high = wordCount;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			int compared = compare(middle, text, prefix);
+
+			if (compared < 0 || (strict && compared == 0)) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the ordinal of the word.
+	 *
+	 * @param word the word to find
+	 * @return the ordinal of the word, or -1 if the word is not in the segment
+	 */
+	private int find(String word) {
+		int found = search(word, false, false);
+		return (found < wordCount && compare(found, word, false) == 0) ? found : -1;
+	}
+
+	/**
+	 * Returns the location ID of the location.
+	 *
+	 * @param location the location to find
+	 * @return the location ID, or -1 if the location is not in the segment
+	 */
+	private int findLocation(String location) {
+		int low = 0;
+		int high = documentCount - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compared = getLocation(middle).compareTo(location);
+
+			if (compared < 0) {
+				low = middle + 1;
+			}
+			else if (compared > 0) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the posting of the given word and location.
+	 *
+	 * @param word the word of the posting
+	 * @param location the location of the posting
+	 * @return the index of the posting, or -1 if not present
+	 */
+	private int find(String word, String location) {
+		int ordinal = find(word);
+		int id = findLocation(location);
+
+		if (ordinal < 0 || id < 0) {
+			return -1;
+		}
+
+		int low = getInt(starts, ordinal);
+		int high = getInt(starts, ordinal + 1) - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int current = getInt(documents, middle);
+
+			if (current < id) {
+				low = middle + 1;
+			}
+			else if (current > id) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the word with the given ordinal.
+	 *
+	 * @param word the ordinal of the word
+	 * @return the word
+	 */
+	private String getWord(int word) {
+		int start = getInt(wordOffsets, word);
+		char[] chars = new char[getInt(wordOffsets, word + 1) - start];
+
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = buffer.getChar(wordChars + 2 * (start + i));
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Decodes the packed positions of the given posting.
+	 *
+	 * @param posting the index of the posting
+	 * @return array of positions
+	 */
+	private int[] unpack(int posting) {
+		int[] decoded = new int[getInt(frequencies, posting)];
+		int offset = positions + getInt(positionOffsets, posting);
+		int previous = 0;
+
+		for (int i = 0; i < decoded.length; i++) {
+			int delta = 0;
+			int shift = 0;
+			byte current;
+
+			do {
+				current = buffer.get(offset++);
+				delta |= (current & 0x7F) << shift;
+				shift += 7;
+			} while (current < 0);
+
+			previous += delta;
+			decoded[i] = previous;
+		}
+		return decoded;
+	}
+
+	@Override
+	public void addAll(InvertedIndex other) {
+		throw new UnsupportedOperationException("A segment cannot be modified.");
+	}
+
+	@Override
+	public void addAll(Collection<? extends InvertedIndex> others) {
+		throw new UnsupportedOperationException("A segment cannot be modified.");
+	}
+
+	@Override
+	public void add(String word, String path, Integer position) {
+		throw new UnsupportedOperationException("A segment cannot be modified.");
+	}
+
+	@Override
+	protected void addAll(Collection<? extends InvertedIndex> others, Predicate<String> words) {
+		throw new UnsupportedOperationException("A segment cannot be modified.");
+	}
+
+	@Override
+	protected void offsetPositions(int amount) {
+		throw new UnsupportedOperationException("A segment cannot be modified.");
+	}
+
+	@Override
+	public void seal() {
+		// Positions are always packed.
+	}
+
+	/**
+	 * Loads the whole segment onto the heap as a frozen index.
+	 */
+	@Override
+	public FrozenIndex freeze() {
+		String[] words = new String[wordCount];
+		int postingCount = getInt(starts, wordCount);
+		int[] wordStarts = new int[wordCount + 1];
+		int[] ids = new int[postingCount];
+		int[] wordFrequencies = new int[postingCount];
+		int[] offsets = new int[postingCount + 1];
+		String[] locations = new String[documentCount];
+		int[] wordCounts = new int[documentCount];
+
+		for (int word = 0; word < wordCount; word++) {
+			words[word] = getWord(word);
+			wordStarts[word + 1] = getInt(starts, word + 1);
+		}
+
+		for (int posting = 0; posting < postingCount; posting++) {
+			ids[posting] = getInt(documents, posting);
+			wordFrequencies[posting] = getInt(frequencies, posting);
+			offsets[posting + 1] = getInt(positionOffsets, posting + 1);
+		}
+
+		for (int id = 0; id < documentCount; id++) {
+			locations[id] = getLocation(id);
+			wordCounts[id] = getInt(counts, id);
+		}
+
+		byte[] packed = new byte[offsets[postingCount]];
+
+		for (int i = 0; i < packed.length; i++) {
+			packed[i] = buffer.get(positions + i);
+		}
+
+		return new FrozenIndex(words, wordStarts, ids, wordFrequencies, offsets, packed, locations, wordCounts);
+	}
+
+	@Override
+	public void writeCounts(Path path) throws IOException {
+		TreeMap<String, Integer> countsMap = new TreeMap<>();
+
+		for (int id = 0; id < documentCount; id++) {
+			countsMap.put(getLocation(id), getCount(id));
+		}
+		JsonWriter.asObject(countsMap, path);
+	}
+
+	@Override
+	public Set<String> getPaths() {
+		Set<String> paths = new LinkedHashSet<>();
+
+		for (int id = 0; id < documentCount; id++) {
+			paths.add(getLocation(id));
+		}
+		return Collections.unmodifiableSet(paths);
+	}
+
+	@Override
+	public Integer getCount(String path) {
+		int id = findLocation(path);
+		return id < 0 ? null : getCount(id);
+	}
+
+	@Override
+	public int getCount(int id) {
+		return getInt(counts, id);
+	}
+
+	@Override
+	protected int[] getCounts() {
+		int[] wordCounts = new int[documentCount];
+
+		for (int id = 0; id < documentCount; id++) {
+			wordCounts[id] = getInt(counts, id);
+		}
+		return wordCounts;
+	}
+
+	@Override
+	protected String[] lookupLocations(int[] ids, int size) {
+		String[] locations = new String[size];
+
+		for (int i = 0; i < size; i++) {
+			locations[i] = getLocation(ids[i]);
+		}
+		return locations;
+	}
+
+	@Override
+	public String getLocation(int id) {
+		int start = getInt(locationOffsets, id);
+		byte[] bytes = new byte[getInt(locationOffsets, id + 1) - start];
+
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(locationBytes + start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public Set<String> getWords() {
+		Set<String> words = new LinkedHashSet<>();
+
+		for (int word = 0; word < wordCount; word++) {
+			words.add(getWord(word));
+		}
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public int countWords(String prefix) {
+		return search(prefix, true, true) - search(prefix, true, false);
+	}
+
+	@Override
+	protected List<String> listWords(String prefix) {
+		int end = search(prefix, true, true);
+		List<String> found = new ArrayList<>();
+
+		for (int word = search(prefix, true, false); word < end; word++) {
+			found.add(getWord(word));
+		}
+		return found;
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		int ordinal = find(word);
+
+		if (ordinal < 0) {
+			return Collections.emptySet();
+		}
+
+		TreeSet<String> found = new TreeSet<>();
+
+		for (int i = getInt(starts, ordinal); i < getInt(starts, ordinal + 1); i++) {
+			found.add(getLocation(getInt(documents, i)));
+		}
+		return Collections.unmodifiableSet(found);
+	}
+
+	@Override
+	public int[] getPositions(String word, String location) {
+		int posting = find(word, location);
+		return posting < 0 ? new int[0] : unpack(posting);
+	}
+
+	@Override
+	public boolean containsCount(String path) {
+		return findLocation(path) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return find(word) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		return find(word, location) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location, Integer position) {
+		int posting = find(word, location);
+		return posting >= 0 && Arrays.binarySearch(unpack(posting), position) >= 0;
+	}
+
+	@Override
+	public String toString() {
+		return freeze().toString();
+	}
+
+	@Override
+	public List<SearchResult> search(Set<String> queries, boolean exactSearch, int k) {
+		int[] accumulators;
+
+		if (exactSearch) {
+			accumulators = new int[documentCount];
+
+			for (String query : queries) {
+				int word = find(query);
+
+				if (word >= 0) {
+					searchLocations(accumulators, word);
+				}
+			}
+		}
+		else {
+			List<int[]> ranges = new ArrayList<>(queries.size());
+
+			// Binary searches for the range of words that start with each query.
+			for (String query : queries) {
+				ranges.add(new int[] { search(query, true, false), search(query, true, true) });
+			}
+			accumulators = accumulate(ranges, documentCount, this::searchLocations);
+		}
+
+		return selectTop(getResults(accumulators), k);
+	}
+
+	/**
+	 * Intersects an automaton of each query with the sorted words of the segment, skipping
+	 * ahead by binary search past every word that starts with a prefix no longer accepted.
+	 */
+	@Override
+	public List<SearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		List<int[]> ranges = new ArrayList<>();
+
+		for (String query : queries) {
+			LevenshteinAutomaton automaton = new LevenshteinAutomaton(query, distance);
+			addWords(ranges, automaton.intersect(wordCount, this::getWord, prefix -> search(prefix, true, true)));
+		}
+
+		int[] accumulators = accumulate(ranges, documentCount, this::searchLocations);
+		return selectTop(getResults(accumulators), k);
+	}
+
+	/**
+	 * Returns the unsorted search results of every location with a count. Reads the word
+	 * counts of only the locations found, since they are not on the heap.
+	 *
+	 * @param accumulators the counts of the search results, indexed by location ID
+	 * @return full unsorted list of search results
+	 */
+	private List<SearchResult> getResults(int[] accumulators) {
+		List<SearchResult> results = new ArrayList<>();
+
+		for (int id = 0; id < documentCount; id++) {
+			if (accumulators[id] > 0) {
+				results.add(new SearchResult(id, accumulators[id], getInt(counts, id)));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Adds the frequencies of every posting of the given word to the counts of its locations.
+	 *
+	 * @param accumulators the counts of the search results, indexed by location ID
+	 * @param word the ordinal of the word found
+	 */
+	private void searchLocations(int[] accumulators, int word) {
+		int last = getInt(starts, word + 1);
+
+		for (int i = getInt(starts, word); i < last; i++) {
+			accumulators[getInt(documents, i)] += getInt(frequencies, i);
+		}
+	}
+
+	@Override
+	protected Postings getPostings(String word) {
+		int found = find(word);
+		return found < 0 ? null : new WordPostings(found);
+	}
+
+	/**
+	 * Nested class that views the postings of one word in the segment.
+	 */
+	private class WordPostings implements Postings {
+
+		/** The index of the first posting of the word. */
+		private final int start;
+
+		/** The number of postings of the word. */
+		private final int size;
+
+		/**
+		 * Initializes a view of the postings of the word.
+		 *
+		 * @param word the ordinal of the word
+		 */
+		public WordPostings(int word) {
+			this.start = getInt(starts, word);
+			this.size = getInt(starts, word + 1) - start;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int getDocument(int index) {
+			return getInt(documents, start + index);
+		}
+
+		@Override
+		public int getFrequency(int index) {
+			return getInt(frequencies, start + index);
+		}
+
+		@Override
+		public int[] getPositions(int index) {
+			return unpack(start + index);
+		}
+	}
+}
@@ -0,0 +1,335 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves and loads versioned binary snapshots of an index so it can be restored at
+ * startup in a single streaming pass instead of being rebuilt. Snapshots are written
+ * and read through file channels with a direct buffer.
+ *
+ * A snapshot is a sequence of big-endian values: the magic number, the version, the
+ * number of words, postings, and locations, and the number of packed position bytes,
+ * followed by the words, the starts, documents, frequencies, and offsets of the
+ * postings, the packed positions, the locations, and the word counts. Strings are
+ * written as their UTF-8 length followed by their UTF-8 bytes.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class IndexSnapshot {
+
+	/** The magic number that starts every snapshot file ("SNAP"). */
+	public static final int MAGIC = 0x534E4150;
+
+	/** The version of the snapshot file format. */
+	public static final int VERSION = 1;
+
+	/** The size of the buffer used to read and write snapshots. */
+	private static final int BUFFER = 1 << 16;
+
+	/**
+	 * Writes the arrays of a frozen index as a snapshot file.
+	 *
+	 * @param path the path to write the snapshot to
+	 * @param words the sorted words
+	 * @param starts where the postings of each word start, plus the total number of postings
+	 * @param documents the location ID of each posting
+	 * @param frequencies the number of positions of each posting
+	 * @param offsets where the packed positions of each posting start, plus the total
+	 * @param positions the packed positions of every posting
+	 * @param locations the location of each location ID
+	 * @param counts the word count of each location ID
+	 * @throws IOException if unable to write the file
+	 *
+	 * @see FrozenIndex#writeSnapshot(Path)
+	 */
+	public static void write(Path path, String[] words, int[] starts, int[] documents, int[] frequencies,
+			int[] offsets, byte[] positions, String[] locations, int[] counts) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(words.length);
+			buffer.putInt(documents.length);
+			buffer.putInt(locations.length);
+			buffer.putInt(offsets[documents.length]);
+
+			for (String word : words) {
+				writeString(channel, buffer, word);
+			}
+
+			writeInts(channel, buffer, starts, words.length + 1);
+			writeInts(channel, buffer, documents, documents.length);
+			writeInts(channel, buffer, frequencies, documents.length);
+			writeInts(channel, buffer, offsets, documents.length + 1);
+			writeBytes(channel, buffer, positions, offsets[documents.length]);
+
+			for (String location : locations) {
+				writeString(channel, buffer, location);
+			}
+
+			writeInts(channel, buffer, counts, locations.length);
+			flush(channel, buffer);
+		}
+	}
+
+	/**
+	 * Loads a snapshot file as a frozen index.
+	 *
+	 * @param path the snapshot file to load
+	 * @return the frozen index stored in the snapshot
+	 * @throws IOException if unable to read the file, or it is not a valid snapshot or is
+	 *   truncated or corrupt
+	 */
+	public static FrozenIndex read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+			buffer.flip();
+
+			fill(channel, buffer, 24);
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IOException("Not a version " + VERSION + " snapshot file: " + path);
+			}
+
+			int wordCount = buffer.getInt();
+			int postingCount = buffer.getInt();
+			int locationCount = buffer.getInt();
+			int positionLength = buffer.getInt();
+
+			// Checks the counts against the smallest file they could fit in before allocating anything.
+			long minimum = 24 + 8L * wordCount + 4 + 12L * postingCount + 4 + 8L * locationCount;
+
+			if (wordCount < 0 || postingCount < 0 || locationCount < 0 || positionLength < 0
+					|| minimum + positionLength > channel.size()) {
+				throw new IOException("The snapshot file is corrupt: " + path);
+			}
+
+			String[] words = new String[wordCount];
+
+			for (int word = 0; word < words.length; word++) {
+				words[word] = readString(channel, buffer);
+			}
+
+			int[] starts = readInts(channel, buffer, words.length + 1);
+			int[] documents = readInts(channel, buffer, postingCount);
+			int[] frequencies = readInts(channel, buffer, postingCount);
+			int[] offsets = readInts(channel, buffer, postingCount + 1);
+			byte[] positions = readBytes(channel, buffer, positionLength);
+
+			String[] locations = new String[locationCount];
+
+			for (int id = 0; id < locations.length; id++) {
+				locations[id] = readString(channel, buffer);
+			}
+
+			int[] counts = readInts(channel, buffer, locations.length);
+
+			if (!isSorted(starts, postingCount) || !isSorted(offsets, positionLength) || !inRange(documents, locationCount)) {
+				throw new IOException("The snapshot file is corrupt: " + path);
+			}
+
+			return new FrozenIndex(words, starts, documents, frequencies, offsets, positions, locations, counts);
+		}
+	}
+
+	/**
+	 * Returns whether the array starts at 0, never decreases, and ends at the given last
+	 * element, as the starts of postings and offsets of positions must.
+	 *
+	 * @param elements the elements to check
+	 * @param last the last element the array must end at
+	 * @return true if the elements are valid
+	 */
+	private static boolean isSorted(int[] elements, int last) {
+		for (int i = 1; i < elements.length; i++) {
+			if (elements[i] < elements[i - 1]) {
+				return false;
+			}
+		}
+		return elements[0] == 0 && elements[elements.length - 1] == last;
+	}
+
+	/**
+	 * Returns whether every element is a valid ID, from 0 to the given number exclusive.
+	 *
+	 * @param elements the elements to check
+	 * @param count the number of valid IDs
+	 * @return true if every element is a valid ID
+	 */
+	private static boolean inRange(int[] elements, int count) {
+		for (int element : elements) {
+			if (element < 0 || element >= count) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes out everything in the buffer and clears it.
+	 *
+	 * @param channel the channel to write to
+	 * @param buffer the buffer to flush
+	 * @throws IOException if unable to write
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Writes the first elements of the array as big-endian ints.
+	 *
+	 * @param channel the channel to write to
+	 * @param buffer the buffer to write through
+	 * @param elements the elements to write
+	 * @param count the number of elements to write
+	 * @throws IOException if unable to write
+	 */
+	private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] elements, int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			if (buffer.remaining() < 4) {
+				flush(channel, buffer);
+			}
+			buffer.putInt(elements[i]);
+		}
+	}
+
+	/**
+	 * Writes the first bytes of the array.
+	 *
+	 * @param channel the channel to write to
+	 * @param buffer the buffer to write through
+	 * @param bytes the bytes to write
+	 * @param count the number of bytes to write
+	 * @throws IOException if unable to write
+	 */
+	private static void writeBytes(FileChannel channel, ByteBuffer buffer, byte[] bytes, int count) throws IOException {
+		for (int i = 0; i < count;) {
+			if (!buffer.hasRemaining()) {
+				flush(channel, buffer);
+			}
+
+			int length = Math.min(buffer.remaining(), count - i);
+			buffer.put(bytes, i, length);
+			i += length;
+		}
+	}
+
+	/**
+	 * Writes the UTF-8 length and bytes of the string.
+	 *
+	 * @param channel the channel to write to
+	 * @param buffer the buffer to write through
+	 * @param text the string to write
+	 * @throws IOException if unable to write
+	 */
+	private static void writeString(FileChannel channel, ByteBuffer buffer, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+		if (buffer.remaining() < 4) {
+			flush(channel, buffer);
+		}
+		buffer.putInt(bytes.length);
+		writeBytes(channel, buffer, bytes, bytes.length);
+	}
+
+	/**
+	 * Reads from the channel until the buffer has at least the given number of bytes
+	 * remaining, or as many as fit in the buffer.
+	 *
+	 * @param channel the channel to read from
+	 * @param buffer the buffer to read into, ready to be read from
+	 * @param bytes the number of bytes needed
+	 * @throws IOException if unable to read or the file ends too soon
+	 */
+	private static void fill(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+
+		buffer.compact();
+		int needed = Math.min(bytes, buffer.capacity());
+
+		while (buffer.position() < needed) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException("The snapshot file ended unexpectedly.");
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Reads the given number of big-endian ints.
+	 *
+	 * @param channel the channel to read from
+	 * @param buffer the buffer to read through
+	 * @param count the number of ints to read
+	 * @return array of ints
+	 * @throws IOException if unable to read
+	 */
+	private static int[] readInts(FileChannel channel, ByteBuffer buffer, int count) throws IOException {
+		int[] elements = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			fill(channel, buffer, 4);
+			elements[i] = buffer.getInt();
+		}
+		return elements;
+	}
+
+	/**
+	 * Reads the given number of bytes.
+	 *
+	 * @param channel the channel to read from
+	 * @param buffer the buffer to read through
+	 * @param count the number of bytes to read
+	 * @return array of bytes
+	 * @throws IOException if unable to read
+	 */
+	private static byte[] readBytes(FileChannel channel, ByteBuffer buffer, int count) throws IOException {
+		byte[] bytes = new byte[count];
+
+		for (int i = 0; i < count;) {
+			fill(channel, buffer, 1);
+
+			int length = Math.min(buffer.remaining(), count - i);
+			buffer.get(bytes, i, length);
+			i += length;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Reads a string written as its UTF-8 length and bytes.
+	 *
+	 * @param channel the channel to read from
+	 * @param buffer the buffer to read through
+	 * @return the string
+	 * @throws IOException if unable to read
+	 */
+	private static String readString(FileChannel channel, ByteBuffer buffer) throws IOException {
+		fill(channel, buffer, 4);
+		int length = buffer.getInt();
+
+		// The string cannot be longer than the rest of the file.
+		if (length < 0 || length > channel.size() - channel.position() + buffer.remaining()) {
+			throw new IOException("The snapshot file has a string of invalid length " + length + ".");
+		}
+		return new String(readBytes(channel, buffer, length), StandardCharsets.UTF_8);
+	}
+}
@@ -1,17 +1,31 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 /**
- * Nested data structure class that houses Strings, TreeMaps, TreeSets, and Integers in one Map
- * and Strings and Integers in another.
+ * Nested data structure class that houses Strings and {@link PostingList} objects in one Map,
+ * and the word counts of each location in an array. Locations are stored in a {@link DocumentTable}
+ * and referred to by their integer IDs everywhere else in the index.
+ *
+ * Read-only subclasses, {@link FrozenIndex} and {@link IndexSegment}, throw an
+ * {@link UnsupportedOperationException} from every method that adds to or changes the
+ * index, including the protected ones, so no write is ever silently dropped.
  *
  * @author CS 212 Software Development
  * @author University of San Francisco
@@ -20,17 +34,82 @@ import java.util.TreeSet;
 public class InvertedIndex {
 
 	/** Stores arguments in key = value pairs regarding index data. **/
-	private final TreeMap<String, TreeMap<String, TreeSet<Integer>>> map;
+	private final TreeMap<String, PostingList> map;
+
+	/** Stores the word count of each location, indexed by location ID. **/
+	private int[] counts;
+
+	/** Assigns each location an ID and maps the IDs back to locations. **/
+	private final DocumentTable documents;
+
+	/** Caches the term dictionary of the words, or null if words were added since it was built. **/
+	private volatile Dictionary dictionary;
+
+	/** Counts the changes made to the index, so cached search results can be invalidated. **/
+	private final AtomicLong generation;
+
+	/** Caches a frozen copy of the index for BM25 ranking, or null until first needed. **/
+	private volatile FrozenCopy frozen;
+
+	/** The default number of words a partial search must expand to before it is split across threads. */
+	public static final int PARALLEL_THRESHOLD = 8192;
+
+	/** The largest array that can be allocated. */
+	private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
 
-	/** Stores arguments in key = value pairs regarding file word counts. **/
-	private final TreeMap<String, Integer> countsMap;
+	/** The fewest words added up by one thread in a parallel partial search. */
+	private static final int CHUNK = 1024;
+
+	/** The number of words a partial search must expand to before it is split across threads. */
+	private static volatile int parallelThreshold = PARALLEL_THRESHOLD;
 
 	/**
 	 * Initializes the argument maps.
 	 */
 	public InvertedIndex() {
 		map = new TreeMap<>();
-		countsMap = new TreeMap<>();
+		counts = new int[16];
+		documents = new DocumentTable();
+		dictionary = null;
+		generation = new AtomicLong();
+		frozen = null;
+	}
+
+	/**
+	 * Initializes a copy of the other index that shares its posting lists. The copy must
+	 * not add to a shared posting list without copying it first.
+	 *
+	 * @param other the index to copy
+	 *
+	 * @see #copyWith(Collection, Predicate)
+	 */
+	private InvertedIndex(InvertedIndex other) {
+		map = new TreeMap<>(other.map);
+		counts = other.counts.clone();
+		documents = new DocumentTable(other.documents);
+		dictionary = null;
+		generation = new AtomicLong();
+		frozen = null;
+	}
+
+	/**
+	 * Returns the generation of the index, which changes whenever words are added that
+	 * may change search results.
+	 *
+	 * @return the generation of the index
+	 *
+	 * @see QueryCache
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Moves the index to a new generation. Must be called by every method that changes
+	 * what searches return.
+	 */
+	protected void nextGeneration() {
+		generation.incrementAndGet();
 	}
 
 	/**
@@ -38,35 +117,159 @@ public class InvertedIndex {
 	 * Also updates the map holding the word counts.
 	 *
 	 * @param other the other InvertedIndex to add
+	 *
+	 * @see #addAll(Collection)
 	 */
 	public void addAll(InvertedIndex other) {
-		// Combines this.map and other.map together.
-		for (String key : other.map.keySet()) {
-			if (this.map.containsKey(key)) {
+		merge(List.of(other), null, false);
+		nextGeneration();
+	}
 
-				for (String path : other.map.get(key).keySet()) {
+	/**
+	 * Adds all of the elements in the other InvertedIndexes to this InvertedIndex in a
+	 * single pass over their sorted words, as if each had been added in order with
+	 * {@link #addAll(InvertedIndex)}. Also updates the map holding the word counts.
+	 *
+	 * @param others the other InvertedIndexes to add
+	 */
+	public void addAll(Collection<? extends InvertedIndex> others) {
+		merge(new ArrayList<>(others), null, false);
+		nextGeneration();
+	}
 
-					if (this.map.get(key).containsKey(path)) {
-						this.map.get(key).get(path).addAll(other.map.get(key).get(path));
-					}
-					else {
-						this.map.get(key).put(path, other.map.get(key).get(path));
-					}
-				}
+	/**
+	 * Adds only the given words of the other InvertedIndexes to this InvertedIndex, in the
+	 * same single pass as {@link #addAll(Collection)}. The word counts are increased by the
+	 * number of positions of the words added, so the counts of indexes that each hold some
+	 * of the words of a location add up to its full word count.
+	 *
+	 * @param others the other InvertedIndexes to add
+	 * @param words tests whether each word should be added
+	 */
+	protected void addAll(Collection<? extends InvertedIndex> others, Predicate<String> words) {
+		merge(new ArrayList<>(others), words, false);
+		nextGeneration();
+	}
+
+	/**
+	 * Returns a new sealed index holding the words of this index and the given words of
+	 * the other indexes, leaving this index unchanged. The new index shares every posting
+	 * list of this index that the others do not add to and copies only the ones they do,
+	 * so apart from copying the references to the words and locations, building it costs
+	 * the size of the others rather than the size of this index. This index must not be
+	 * changed while the new index is in use.
+	 *
+	 * @param others the other InvertedIndexes to add
+	 * @param words tests whether each word should be added, or null to add every word
+	 * @return the new index
+	 */
+	protected InvertedIndex copyWith(Collection<? extends InvertedIndex> others, Predicate<String> words) {
+		InvertedIndex copy = new InvertedIndex(this);
+		copy.merge(new ArrayList<>(others), words, true);
+		copy.seal();
+		return copy;
+	}
+
+	/**
+	 * Merges the other indexes into this index. The sorted words of the other indexes are
+	 * merged with a priority queue, so each word is looked up once no matter how many of
+	 * them contain it. When there are enough words to make it cheaper than looking each
+	 * one up, the words of this index are walked alongside in the same pass.
+	 *
+	 * @param others the other InvertedIndexes to add
+	 * @param words tests whether each word should be added, or null to add every word
+	 * @param shared whether the posting lists of this index are shared and must be copied
+	 *   before they are added to
+	 */
+	private void merge(List<InvertedIndex> others, Predicate<String> words, boolean shared) {
+		int[][] remaps = new int[others.size()][];
+		PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+		long total = 0;
+
+		for (int source = 0; source < others.size(); source++) {
+			InvertedIndex other = others.get(source);
+
+			// Maps the IDs of the other index to the IDs of this index.
+			remaps[source] = new int[other.documents.size()];
+
+			for (int id = 0; id < remaps[source].length; id++) {
+				remaps[source][id] = this.documents.add(other.documents.getLocation(id));
 			}
-			else {
-				this.map.put(key, other.map.get(key));
+
+			Iterator<Map.Entry<String, PostingList>> iterator = words == null
+					? other.map.entrySet().iterator()
+					: other.map.entrySet().stream().filter(entry -> words.test(entry.getKey())).iterator();
+
+			Cursor cursor = new Cursor(source, iterator);
+
+			if (cursor.advance()) {
+				cursors.add(cursor);
 			}
+			total += other.map.size();
 		}
 
-		// Combines this.countsMap and other.countsMap together.
-		for (String countKey : other.countsMap.keySet()) {
-			if (this.countsMap.containsKey(countKey)) {
-				int newCount = this.countsMap.get(countKey) + other.countsMap.get(countKey);
-				this.countsMap.put(countKey, newCount);
+		boolean walk = total * (32 - Integer.numberOfLeadingZeros(map.size())) > map.size();
+		Iterator<Map.Entry<String, PostingList>> existing = map.entrySet().iterator();
+		Map.Entry<String, PostingList> current = (walk && existing.hasNext()) ? existing.next() : null;
+		TreeMap<String, PostingList> added = new TreeMap<>();
+
+		// Combines this.map and the maps of the other indexes together.
+		while (!cursors.isEmpty()) {
+			String word = cursors.peek().word;
+			PostingList postings;
+
+			if (walk) {
+				while (current != null && current.getKey().compareTo(word) < 0) {
+					current = existing.hasNext() ? existing.next() : null;
+				}
+				postings = (current != null && current.getKey().equals(word)) ? current.getValue() : null;
 			}
 			else {
-				this.countsMap.putIfAbsent(countKey, other.countsMap.get(countKey));
+				postings = map.get(word);
+			}
+
+			if (postings == null) {
+				postings = new PostingList();
+				added.put(word, postings);
+			}
+			else if (shared) {
+				postings = new PostingList(postings);
+
+				if (walk) {
+					current.setValue(postings);
+				}
+				else {
+					map.put(word, postings);
+				}
+				dictionary = null;
+			}
+
+			while (!cursors.isEmpty() && cursors.peek().word.equals(word)) {
+				Cursor cursor = cursors.poll();
+				postings.addAll(cursor.postings, remaps[cursor.source]);
+
+				if (words != null) {
+					// Counts only the positions of the words added.
+					for (int i = 0; i < cursor.postings.size(); i++) {
+						addCount(remaps[cursor.source][cursor.postings.getDocument(i)], cursor.postings.getFrequency(i));
+					}
+				}
+
+				if (cursor.advance()) {
+					cursors.add(cursor);
+				}
+			}
+		}
+
+		if (!added.isEmpty()) {
+			map.putAll(added);
+			dictionary = null;
+		}
+
+		// Combines this.counts and other.counts together.
+		for (int source = 0; source < others.size() && words == null; source++) {
+			for (int id = 0; id < remaps[source].length; id++) {
+				addCount(remaps[source][id], others.get(source).counts[id]);
 			}
 		}
 	}
@@ -81,13 +284,133 @@ public class InvertedIndex {
 	 * @param position the position to add if it's not already mapped to the corresponding word and path
 	 */
 	public void add(String word, String path, Integer position) {
-		map.putIfAbsent(word, new TreeMap<String, TreeSet<Integer>>());
-		map.get(word).putIfAbsent(path, new TreeSet<Integer>());
+		int id = documents.add(path);
+
+		PostingList postings = map.get(word);
+
+		if (postings == null) {
+			postings = new PostingList();
+			map.put(word, postings);
+			dictionary = null;
+		}
+
+		if (postings.add(id, position)) {
+			addCount(id, 1);
+			nextGeneration();
+		}
+	}
+
+	/**
+	 * Seals every posting list, packing its positions. Should be called once building
+	 * is finished; adding to the index afterwards is still allowed but slower.
+	 *
+	 * @see PostingList#seal()
+	 */
+	public void seal() {
+		for (PostingList postings : map.values()) {
+			postings.seal();
+		}
+	}
+
+	/**
+	 * Adds the given amount to every position in this index, such as to place the words
+	 * of one part of a file after the words of the parts before it. Only meant for local
+	 * indexes that are not shared with other threads.
+	 *
+	 * @param amount the amount to add to every position
+	 *
+	 * @see PostingList#offsetPositions(int)
+	 */
+	protected void offsetPositions(int amount) {
+		for (PostingList postings : map.values()) {
+			postings.offsetPositions(amount);
+		}
+		nextGeneration();
+	}
 
-		if (map.get(word).get(path).add(position)) {
-			int count = 1 + countsMap.getOrDefault(path, 0);
-			countsMap.put(path, count);
+	/**
+	 * Increments the word count of the location with the given ID, growing the counts
+	 * array if necessary.
+	 *
+	 * @param id the ID of the location
+	 * @param amount the amount to increment the count by
+	 */
+	private void addCount(int id, int amount) {
+		if (id >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
 		}
+		counts[id] += amount;
+	}
+
+	/**
+	 * Creates an immutable, read-optimized snapshot of this index. The snapshot does not
+	 * change if this index is modified afterwards.
+	 *
+	 * @return the frozen snapshot of this index
+	 */
+	public FrozenIndex freeze() {
+		String[] words = map.keySet().toArray(new String[0]);
+		int[] starts = new int[words.length + 1];
+		long length = 0;
+
+		for (int word = 0; word < words.length; word++) {
+			PostingList postings = map.get(words[word]);
+			starts[word + 1] = starts[word] + postings.size();
+			length += postings.length();
+		}
+
+		int[] ids = new int[starts[words.length]];
+		int[] frequencies = new int[ids.length];
+		int[] offsets = new int[ids.length + 1];
+		// Most gaps between positions pack into one or two bytes, so the buffer grows only if needed.
+		byte[] positions = new byte[(int) Math.min(Math.max(2 * length, 16), MAX_ARRAY)];
+
+		// Copies every posting list into the flat arrays, packing the positions.
+		for (int word = 0; word < words.length; word++) {
+			PostingList postings = map.get(words[word]);
+
+			for (int i = 0, posting = starts[word]; i < postings.size(); i++, posting++) {
+				ids[posting] = postings.getDocument(i);
+				frequencies[posting] = postings.getFrequency(i);
+
+				int offset = offsets[posting];
+				int previous = 0;
+
+				for (int position : postings.getPositions(i)) {
+					if (positions.length - offset < 5) {
+						positions = grow(positions, offset + 5L);
+					}
+					offset = PostingList.writeVarInt(positions, offset, position - previous);
+					previous = position;
+				}
+				offsets[posting + 1] = offset;
+			}
+		}
+
+		String[] locations = new String[documents.size()];
+
+		for (int id = 0; id < locations.length; id++) {
+			locations[id] = documents.getLocation(id);
+		}
+
+		return new FrozenIndex(words, starts, ids, frequencies, offsets,
+				Arrays.copyOf(positions, offsets[ids.length]), locations, Arrays.copyOf(counts, locations.length));
+	}
+
+	/**
+	 * Returns a larger copy of the buffer of packed positions, with room for at least the
+	 * given number of bytes.
+	 *
+	 * @param buffer the buffer to grow
+	 * @param needed the number of bytes needed
+	 * @return the larger copy of the buffer
+	 * @throws IllegalStateException if the packed positions do not fit in one array
+	 */
+	private static byte[] grow(byte[] buffer, long needed) {
+		if (needed > MAX_ARRAY) {
+			throw new IllegalStateException("The positions of the index are too large to freeze.");
+		}
+		return Arrays.copyOf(buffer, (int) Math.min(Math.max(needed, buffer.length * 3L / 2), MAX_ARRAY));
 	}
 
 	/**
@@ -97,7 +420,27 @@ public class InvertedIndex {
 	 * @throws IOException if unable to access path
 	 */
 	public void writeIndex(Path path) throws IOException {
-		JsonWriter.asDoubleObject(map, path);
+		JsonWriter.asIndexObject(this, path);
+	}
+
+	/**
+	 * Writes index as a binary segment file that can be memory-mapped by {@link IndexSegment}.
+	 *
+	 * @param path the path to write the segment to
+	 * @throws IOException if unable to access path
+	 */
+	public void writeSegment(Path path) throws IOException {
+		freeze().writeSegment(path);
+	}
+
+	/**
+	 * Writes index as a binary snapshot file that can be loaded by {@link IndexSnapshot#read(Path)}.
+	 *
+	 * @param path the path to write the snapshot to
+	 * @throws IOException if unable to access path
+	 */
+	public void writeSnapshot(Path path) throws IOException {
+		freeze().writeSnapshot(path);
 	}
 
 	/**
@@ -107,26 +450,90 @@ public class InvertedIndex {
 	 * @throws IOException if unable to access path
 	 */
 	public void writeCounts(Path path) throws IOException {
+		TreeMap<String, Integer> countsMap = new TreeMap<>();
+
+		for (int id = 0; id < documents.size(); id++) {
+			countsMap.put(documents.getLocation(id), counts[id]);
+		}
 		JsonWriter.asObject(countsMap, path);
 	}
 
 	/**
-	 * Returns an unmodifiable set view of the keys contained in countsMap.
+	 * Returns an unmodifiable sorted set of the paths that have word counts.
 	 *
 	 * @return unmodifiable set of Strings
 	 */
 	public Set<String> getPaths() {
-		return Collections.unmodifiableSet(countsMap.keySet());
+		return documents.getLocations();
 	}
 
 	/**
-	 * Returns the count for a given path in countsMap.
+	 * Returns the count for a given path.
 	 *
 	 * @param path the path to get count from
-	 * @return value mapped to path in countsMap
+	 * @return word count of the path, or null if the path is not in the index
 	 */
 	public Integer getCount(String path) {
-		return countsMap.get(path);
+		int id = documents.getId(path);
+		return id < 0 ? null : counts[id];
+	}
+
+	/**
+	 * Returns the count for the location with the given ID.
+	 *
+	 * @param id the ID of the location to get count from
+	 * @return word count of the location
+	 */
+	public int getCount(int id) {
+		return counts[id];
+	}
+
+	/**
+	 * Returns the word counts of every location, indexed by location ID. The counts are
+	 * read all at once, so a search can score its results without calling back into the
+	 * index for each one.
+	 *
+	 * @return a copy of the word counts, with one count for every location ID
+	 */
+	protected int[] getCounts() {
+		return Arrays.copyOf(counts, documents.size());
+	}
+
+	/**
+	 * Returns the number of locations in the index, which is also the ID the next new
+	 * location will be given.
+	 *
+	 * @return the number of locations
+	 */
+	protected int countLocations() {
+		return documents.size();
+	}
+
+	/**
+	 * Returns the locations of the given IDs, read all at once so search results never
+	 * call back into the index for their locations.
+	 *
+	 * @param ids the location IDs to look up
+	 * @param size the number of IDs to look up
+	 * @return the location of each ID, in the same order
+	 */
+	protected String[] lookupLocations(int[] ids, int size) {
+		String[] locations = new String[size];
+
+		for (int i = 0; i < size; i++) {
+			locations[i] = documents.getLocation(ids[i]);
+		}
+		return locations;
+	}
+
+	/**
+	 * Returns the location with the given ID.
+	 *
+	 * @param id the ID of the location
+	 * @return the location mapped to the ID
+	 */
+	public String getLocation(int id) {
+		return documents.getLocation(id);
 	}
 
 	/**
@@ -138,6 +545,50 @@ public class InvertedIndex {
 		return Collections.unmodifiableSet(map.keySet());
 	}
 
+	/**
+	 * Returns the number of words in the map that start with the given prefix.
+	 *
+	 * @param prefix the prefix to match
+	 * @return number of matching words
+	 */
+	public int countWords(String prefix) {
+		return getDictionary().terms.count(prefix);
+	}
+
+	/**
+	 * Returns the words in the map that start with the given prefix, in sorted order.
+	 *
+	 * @param prefix the prefix to match
+	 * @return list of matching words
+	 */
+	protected List<String> listWords(String prefix) {
+		TermDictionary terms = getDictionary().terms;
+		int[] range = terms.getRange(prefix);
+		List<String> words = new ArrayList<>(range[1] - range[0]);
+
+		for (int word = range[0]; word < range[1]; word++) {
+			words.add(terms.get(word));
+		}
+		return words;
+	}
+
+	/**
+	 * Returns the term dictionary of the words, building it if words were added since
+	 * it was last built.
+	 *
+	 * @return the term dictionary and posting lists of the words
+	 */
+	private Dictionary getDictionary() {
+		Dictionary current = dictionary;
+
+		// Readers of a thread-safe index may build it at the same time, but build identical copies.
+		if (current == null) {
+			current = new Dictionary(map);
+			dictionary = current;
+		}
+		return current;
+	}
+
 	/**
 	 * Returns an unmodifiable set view of the locations mapped to the given word.
 	 *
@@ -146,7 +597,13 @@ public class InvertedIndex {
 	 */
 	public Set<String> getLocations(String word) {
 		if (map.containsKey(word)) {
-			return Collections.unmodifiableSet(map.get(word).keySet());
+			PostingList postings = map.get(word);
+			TreeSet<String> locations = new TreeSet<>();
+
+			for (int i = 0; i < postings.size(); i++) {
+				locations.add(documents.getLocation(postings.getDocument(i)));
+			}
+			return Collections.unmodifiableSet(locations);
 		}
 		else {
 			return Collections.emptySet();
@@ -154,29 +611,33 @@ public class InvertedIndex {
 	}
 
 	/**
-	 * Returns an unmodifiable view of the inner set mapped to a given word and location in the map.
+	 * Returns a new sorted array of the positions mapped to a given word and location in the map.
 	 *
-	 * @param word the word the set is mapped to
-	 * @param location the location the set is mapped to
-	 * @return unmodifiable view of set of Integers
+	 * @param word the word the positions are mapped to
+	 * @param location the location the positions are mapped to
+	 * @return array of positions, empty if the word or location is not in the map
 	 */
-	public Set<Integer> getPositions(String word, String location) {
-		if (map.containsKey(word) && map.get(word).containsKey(location)) {
-			return Collections.unmodifiableSet(map.get(word).get(location));
+	public int[] getPositions(String word, String location) {
+		int id = documents.getId(location);
+		PostingList postings = map.get(word);
+		int index = (postings == null || id < 0) ? -1 : postings.find(id);
+
+		if (index >= 0) {
+			return postings.getPositions(index);
 		}
 		else {
-			return Collections.emptySet();
+			return new int[0];
 		}
 	}
 
 	/**
-	 * Returns true if countsMap contains the given path.
+	 * Returns true if the given path has a word count.
 	 *
-	 * @param path the path to verify is in the map
-	 * @return true if the path is in the map as key
+	 * @param path the path to verify is in the index
+	 * @return true if the path is in the document table
 	 */
 	public boolean containsCount(String path) {
-		return countsMap.containsKey(path);
+		return documents.contains(path);
 	}
 
 	/**
@@ -197,7 +658,8 @@ public class InvertedIndex {
 	 * @return true if the location is in the map
 	 */
 	public boolean contains(String word, String location) {
-		return (map.containsKey(word) && map.get(word).containsKey(location));
+		int id = documents.getId(location);
+		return (map.containsKey(word) && id >= 0 && map.get(word).find(id) >= 0);
 	}
 
 	/**
@@ -209,7 +671,15 @@ public class InvertedIndex {
 	 * @return true if the position is in the map
 	 */
 	public boolean contains(String word, String location, Integer position) {
-		return (map.containsKey(word) && map.get(word).containsKey(location) && map.get(word).get(location).contains(position));
+		int id = documents.getId(location);
+		PostingList postings = map.get(word);
+
+		if (postings == null || id < 0) {
+			return false;
+		}
+
+		int index = postings.find(id);
+		return (index >= 0 && postings.contains(index, position));
 	}
 
 	@Override
@@ -223,24 +693,56 @@ public class InvertedIndex {
 	 */
 	public class SearchResult implements Comparable<SearchResult> {
 
-		/** Stores location of search result. */
-		private final String where;
+		/** Stores the location ID of search result. */
+		private final int document;
 
 		/** Stores word count of search result for given location. */
-		private int count;
+		private final int count;
 
 		/** Stores score of search result. */
-		private double score;
+		private final double score;
+
+		/**
+		 * Stores the location of search result, or null until it is first needed. Strings
+		 * are immutable, so threads that race to look it up store the same location.
+		 */
+		private String where;
 
 		/**
 		 * Initializes the search result.
 		 *
-		 * @param where where the search result was found
+		 * @param document the ID of the location where the search result was found
+		 * @param count the number of times the queries were found in the location
+		 * @param length the word count of the location
+		 */
+		public SearchResult(int document, int count, int length) {
+			this(document, count, count / (double) length);
+		}
+
+		/**
+		 * Initializes the search result with a score computed by the caller.
+		 *
+		 * @param document the ID of the location where the search result was found
+		 * @param count the number of times the queries were found in the location
+		 * @param score the score of the location
+		 */
+		public SearchResult(int document, int count, double score) {
+			this(document, null, count, score);
+		}
+
+		/**
+		 * Initializes the search result with a location already looked up by the caller.
+		 *
+		 * @param document the ID of the location where the search result was found
+		 * @param where the location where the search result was found, or null to look it up when needed
+		 * @param count the number of times the queries were found in the location
+		 * @param score the score of the location
 		 */
-		public SearchResult(String where) {
+		public SearchResult(int document, String where, int count, double score) {
+			this.document = document;
 			this.where = where;
-			this.count = 0;
-			this.score = 0;
+			this.count = count;
+			this.score = score;
 		}
 
 		/**
@@ -256,18 +758,31 @@ public class InvertedIndex {
 			else if (Integer.compare(other.getCount(), this.count) != 0) {
 				return (Integer.compare(other.getCount(), this.count));
 			}
-			return (this.where.compareTo(other.getWhere()));
+			return (this.getWhere().compareTo(other.getWhere()));
 		}
 
 		/**
-		 * Returns the location of a search result.
+		 * Returns the location of a search result, looking it up from the index only if
+		 * it was not given when the search result was created.
 		 *
 		 * @return location of search result
 		 */
 		public String getWhere() {
+			if (where == null) {
+				where = InvertedIndex.this.getLocation(document);
+			}
 			return where;
 		}
 
+		/**
+		 * Returns the location ID of a search result.
+		 *
+		 * @return location ID of search result
+		 */
+		public int getDocument() {
+			return document;
+		}
+
 		/**
 		 * Returns word count of a search result.
 		 *
@@ -285,18 +800,6 @@ public class InvertedIndex {
 		public double getScore() {
 			return score;
 		}
-
-		/**
-		 * Updates word count and score of a search result.
-		 *
-		 * @param word the amount to increment count by
-		 */
-		private void update(String word) {
-			int amount = map.get(word).get(where).size();
-			count += amount;
-			double totalCount = InvertedIndex.this.getCount(where);
-			score = count / totalCount;
-		}
 	}
 
 	/**
@@ -304,89 +807,627 @@ public class InvertedIndex {
 	 *
 	 * @param queries the queries to search for
 	 * @param exactSearch the boolean to decide whether to perform partial or exact search
-	 * @return a list of search results
+	 * @return a sorted list of search results
+	 *
+	 * @see #search(Set, boolean, int)
 	 */
 	public List<SearchResult> search(Set<String> queries, boolean exactSearch) {
+		return search(queries, exactSearch, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Calls partial or exact search depending on input, and returns only the best results.
+	 *
+	 * @param queries the queries to search for
+	 * @param exactSearch the boolean to decide whether to perform partial or exact search
+	 * @param k the maximum number of search results to return
+	 * @return a sorted list of at most k search results
+	 */
+	public List<SearchResult> search(Set<String> queries, boolean exactSearch, int k) {
+		return selectTop(collectResults(countMatches(queries, exactSearch), counts), k);
+	}
+
+	/**
+	 * Adds up how many times the queries appear in each location, without creating any
+	 * search results, so the counts of several indexes can be added together first.
+	 *
+	 * @param queries the queries to search for
+	 * @param exactSearch the boolean to decide whether to perform partial or exact search
+	 * @return the counts of the search results, indexed by location ID
+	 */
+	protected int[] countMatches(Set<String> queries, boolean exactSearch) {
 		return exactSearch ? exactSearch(queries) : partialSearch(queries);
 	}
 
 	/**
-	 * Searches an index for exact word matches of a given list of queries.
+	 * Calls partial or exact search depending on input, and returns only the best results,
+	 * optionally using document-at-a-time MaxScore retrieval. MaxScore returns the same
+	 * results as the exhaustive search but may skip locations that cannot make the best k.
+	 * Indexes without doc-ID-ordered postings and precomputed score bounds always search
+	 * exhaustively.
 	 *
-	 * @param queries the list of queries to find in index
-	 * @return full list of search results for set of queries
+	 * @param queries the queries to search for
+	 * @param exactSearch the boolean to decide whether to perform partial or exact search
+	 * @param k the maximum number of search results to return
+	 * @param maxScore whether to use MaxScore retrieval when supported
+	 * @return a sorted list of at most k search results
+	 *
+	 * @see FrozenIndex#search(Set, boolean, int, boolean)
 	 */
-	private List<SearchResult> exactSearch(Set<String> queries) {
+	public List<SearchResult> search(Set<String> queries, boolean exactSearch, int k, boolean maxScore) {
+		return search(queries, exactSearch, k);
+	}
 
-		List<SearchResult> results = new ArrayList<>();
-		Map<String, SearchResult> lookup = new HashMap<>();
+	/**
+	 * Searches for words within the given edit distance of the queries, so misspelled
+	 * queries still find results, and returns only the best results. Words matched by
+	 * more than one query are counted once per query, just like partial search.
+	 *
+	 * @param queries the queries to search for
+	 * @param distance the largest edit distance of a word from a query, from 0 to
+	 *   {@link LevenshteinAutomaton#MAX_DISTANCE}
+	 * @param k the maximum number of search results to return
+	 * @return a sorted list of at most k search results
+	 *
+	 * @see TermDictionary#fuzzy(LevenshteinAutomaton)
+	 */
+	public List<SearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		return selectTop(collectResults(countFuzzyMatches(queries, distance), counts), k);
+	}
+
+	/**
+	 * Adds up how many times words within the given edit distance of the queries appear
+	 * in each location, without creating any search results.
+	 *
+	 * @param queries the queries to search for
+	 * @param distance the largest edit distance of a word from a query
+	 * @return the counts of the search results, indexed by location ID
+	 *
+	 * @see #fuzzySearch(Set, int, int)
+	 */
+	protected int[] countFuzzyMatches(Set<String> queries, int distance) {
+		Dictionary words = getDictionary();
+		List<int[]> ranges = new ArrayList<>();
 
-		// Finds all locations a query word appears in and stores them as SearchResult in a list of results.
+		// Intersects an automaton of each query with the term dictionary.
 		for (String query : queries) {
-			if (contains(query)) {
-				searchLocations(lookup, results, query);
+			addWords(ranges, words.terms.fuzzy(new LevenshteinAutomaton(query, distance)));
+		}
+
+		return accumulate(ranges, documents.size(), (found, word) -> searchLocations(found, words.postings[word]));
+	}
+
+	/**
+	 * Adds a range of one word for each of the words found.
+	 *
+	 * @param ranges the ranges of words to add to
+	 * @param words the ordinals of the words found
+	 *
+	 * @see #accumulate(List, int, ObjIntConsumer)
+	 */
+	protected static void addWords(List<int[]> ranges, int[] words) {
+		for (int word : words) {
+			ranges.add(new int[] { word, word + 1 });
+		}
+	}
+
+	/**
+	 * Calls partial or exact search depending on input, and returns only the best results
+	 * ranked by BM25 instead of by the share of each location the queries make up. The
+	 * count of each result is unchanged. Indexes that do not precompute the BM25 norms of
+	 * their locations and words are frozen first, and the frozen copy is reused until the
+	 * index changes.
+	 *
+	 * @param queries the queries to search for
+	 * @param exactSearch the boolean to decide whether to perform partial or exact search
+	 * @param k the maximum number of search results to return
+	 * @return a sorted list of at most k search results
+	 *
+	 * @see FrozenIndex#bm25Search(Set, boolean, int)
+	 */
+	public List<SearchResult> bm25Search(Set<String> queries, boolean exactSearch, int k) {
+		FrozenCopy current = frozen;
+		long version = getGeneration();
+
+		if (current == null || current.generation != version) {
+			// Readers of a thread-safe index may freeze it at the same time, but build identical copies.
+			current = new FrozenCopy(freeze(), version);
+			frozen = current;
+		}
+		return current.index.bm25Search(queries, exactSearch, k);
+	}
+
+	/**
+	 * Returns the best k search results in sorted order. Unless every result is kept, the
+	 * best results are selected with a bounded heap instead of sorting all of them.
+	 *
+	 * @param results the unsorted search results, which may be reordered
+	 * @param k the maximum number of search results to return
+	 * @return a sorted list of at most k search results
+	 */
+	public static List<SearchResult> selectTop(List<SearchResult> results, int k) {
+		if (k >= results.size()) {
+			Collections.sort(results);
+			return results;
+		}
+
+		if (k <= 0) {
+			return new ArrayList<>();
+		}
+
+		// Keeps the worst of the best results found so far at the head of the heap.
+		PriorityQueue<SearchResult> heap = new PriorityQueue<>(k, Collections.reverseOrder());
+
+		for (SearchResult result : results) {
+			if (heap.size() < k) {
+				heap.add(result);
+			}
+			else if (result.compareTo(heap.peek()) < 0) {
+				heap.poll();
+				heap.add(result);
 			}
 		}
 
-		// Sorts the search results for the list of queries and returns them.
-		Collections.sort(results);
+		List<SearchResult> top = new ArrayList<>(heap);
+		Collections.sort(top);
+		return top;
+	}
 
-		return results;
+	/**
+	 * Searches an index for exact word matches of a given list of queries.
+	 *
+	 * @param queries the list of queries to find in index
+	 * @return the counts of the search results, indexed by location ID
+	 */
+	private int[] exactSearch(Set<String> queries) {
+
+		int[] accumulators = new int[documents.size()];
+
+		// Adds up how many times the query words appear in each location.
+		for (String query : queries) {
+			PostingList postings = map.get(query);
+
+			if (postings != null) {
+				searchLocations(accumulators, postings);
+			}
+		}
+		return accumulators;
 	}
 
 	/**
 	 * Searches an index for partial word matches of a given list of queries.
 	 *
 	 * @param queries the list of queries to find in index
-	 * @return full list of search results for set of queries
+	 * @return the counts of the search results, indexed by location ID
 	 */
-	private List<SearchResult> partialSearch(Set<String> queries) {
+	private int[] partialSearch(Set<String> queries) {
 
-		List<SearchResult> results = new ArrayList<>();
-		Map<String, SearchResult> lookup = new HashMap<>();
+		Dictionary words = getDictionary();
+		List<int[]> ranges = new ArrayList<>(queries.size());
 
-		// Finds all locations a query word partially appears in and performs a partial search through them.
+		// Walks the term dictionary down to the range of words that start with each query.
 		for (String query : queries) {
+			ranges.add(words.terms.getRange(query));
+		}
+
+		// Finds all locations a query word partially appears in and performs a partial search through them.
+		return accumulate(ranges, documents.size(), (found, word) -> searchLocations(found, words.postings[word]));
+	}
+
+	/**
+	 * Searches for locations that contain the words as a phrase, one right after the other.
+	 * The count of each result is the number of times the phrase appears in the location.
+	 *
+	 * @param phrase the stemmed words of the phrase, in order
+	 * @param k the maximum number of search results to return
+	 * @return a sorted list of at most k search results
+	 */
+	public List<SearchResult> phraseSearch(List<String> phrase, int k) {
+		return positionalSearch(phrase, PostingList::countPhrase, k);
+	}
+
+	/**
+	 * Searches for locations where the first word appears within the given distance of the
+	 * second word, in either order. The count of each result is the number of times the
+	 * first word appears near the second.
+	 *
+	 * @param first the stemmed first word
+	 * @param second the stemmed second word
+	 * @param distance the largest number of positions the words may be apart
+	 * @param k the maximum number of search results to return
+	 * @return a sorted list of at most k search results
+	 */
+	public List<SearchResult> proximitySearch(String first, String second, int distance, int k) {
+		return positionalSearch(List.of(first, second),
+				positions -> PostingList.countNear(positions[0], positions[1], distance), k);
+	}
+
+	/**
+	 * Searches for locations that match a boolean query of exact stemmed words.
+	 *
+	 * @param query the boolean query to search for
+	 * @param k the maximum number of search results to return
+	 * @return a sorted list of at most k search results
+	 *
+	 * @see BooleanQuery#search(InvertedIndex, int)
+	 */
+	public List<SearchResult> booleanSearch(BooleanQuery query, int k) {
+		return query.search(this, k);
+	}
+
+	/**
+	 * Finds the locations that contain every word by leapfrogging through their postings,
+	 * galloping each word ahead to the location the others are at, and counts the matches
+	 * in each location from the positions of the words.
+	 *
+	 * @param words the stemmed words to find
+	 * @param counter counts the matches in a location from the sorted positions of each word
+	 * @param k the maximum number of search results to return
+	 * @return a sorted list of at most k search results
+	 */
+	private List<SearchResult> positionalSearch(List<String> words, ToIntFunction<int[][]> counter, int k) {
+		Postings[] postings = new Postings[words.size()];
+
+		for (int i = 0; i < postings.length; i++) {
+			postings[i] = getPostings(words.get(i));
+
+			if (postings[i] == null || postings[i].size() == 0) {
+				return new ArrayList<>();
+			}
+		}
+
+		// Reads the word counts once, so matches can be added up without calling back into the index.
+		int[] lengths = getCounts();
+		int[] ids = new int[16];
+		int[] matches = new int[16];
+		int size = 0;
+
+		int[] indexes = new int[postings.length];
+		int document = postings[0].getDocument(0);
+		int word = 0;
+
+		while (true) {
+			indexes[word] = postings[word].advance(indexes[word], document);
+
+			if (indexes[word] >= postings[word].size()) {
+				break;
+			}
+
+			int found = postings[word].getDocument(indexes[word]);
 
-			// Searches through tailmap of keys in index for words that start with the query.
-			for (String word : map.tailMap(query).keySet()) {
+			if (found != document) {
+				// Moves every word up to the location this word skipped to.
+				document = found;
+				word = 0;
+			}
+			else if (++word == postings.length) {
+				int[][] positions = new int[postings.length][];
 
-				if (!word.startsWith(query)) {
-					break;
+				for (int i = 0; i < postings.length; i++) {
+					positions[i] = postings[i].getPositions(indexes[i]);
 				}
-				else {
-					searchLocations(lookup, results, word);
+
+				int count = counter.applyAsInt(positions);
+
+				// Skips locations added to the index after its word counts were read.
+				if (count > 0 && document < lengths.length) {
+					if (size == ids.length) {
+						ids = Arrays.copyOf(ids, size * 2);
+						matches = Arrays.copyOf(matches, size * 2);
+					}
+					ids[size] = document;
+					matches[size] = count;
+					size++;
 				}
+
+				document++;
+				word = 0;
 			}
 		}
 
-		// Sorts the search results and returns them.
-		Collections.sort(results);
+		return selectTop(createResults(size, ids, matches, lengths), k);
+	}
 
-		return results;
+	/**
+	 * Returns the postings of the word for positional and boolean queries, with location IDs that
+	 * match {@link #getLocation(int)} and {@link #getCount(int)}.
+	 *
+	 * @param word the word to find
+	 * @return the postings of the word, or null if the word is not in the index
+	 */
+	protected Postings getPostings(String word) {
+		return map.get(word);
 	}
 
 	/**
-	 * Creates or updates search results based on the given query and the location it's found in.
+	 * Sets the number of words a partial search must expand to before it is split across
+	 * the threads of the common fork/join pool. Applies to every index.
 	 *
-	 * @param lookup the lookup map
-	 * @param results the list of search results to add to
-	 * @param query the query found
+	 * @param words the number of words, or zero or less to never split partial searches
 	 */
-	private void searchLocations(Map<String, SearchResult> lookup, List<SearchResult> results, String query) {
-		Set<String> locations = map.get(query).keySet();
+	public static void setParallelThreshold(int words) {
+		parallelThreshold = words > 0 ? words : Integer.MAX_VALUE;
+	}
 
-		for (String location : locations) {
+	/**
+	 * Adds up the postings of every word in the given ranges of term ordinals, as found by
+	 * a partial search. Once the ranges hold at least the parallel threshold of words, the
+	 * words are split into chunks that are added up into separate accumulators on the
+	 * common fork/join pool, and the accumulators are summed at the end. Sums do not depend
+	 * on the order they are added in, so both ways give identical counts.
+	 *
+	 * @param ranges the ranges of term ordinals found, from inclusive to exclusive
+	 * @param documents the number of locations in the index
+	 * @param scorer adds the postings of the given word to the given accumulators
+	 * @return the counts of the search results, indexed by location ID
+	 *
+	 * @see #setParallelThreshold(int)
+	 */
+	protected static int[] accumulate(List<int[]> ranges, int documents, ObjIntConsumer<int[]> scorer) {
+		int size = 0;
+
+		for (int[] range : ranges) {
+			size += range[1] - range[0];
+		}
+
+		if (size < parallelThreshold) {
+			int[] accumulators = new int[documents];
 
-			if (lookup.containsKey(location)) {
-				lookup.get(location).update(query);
+			for (int[] range : ranges) {
+				for (int word = range[0]; word < range[1]; word++) {
+					scorer.accept(accumulators, word);
+				}
 			}
-			else {
-				SearchResult result = new SearchResult(location);
-				results.add(result);
-				lookup.put(location, result);
-				lookup.get(location).update(query);
+			return accumulators;
+		}
+
+		// Lists every word found, keeping words found by more than one query.
+		int[] words = new int[size];
+		int index = 0;
+
+		for (int[] range : ranges) {
+			for (int word = range[0]; word < range[1]; word++) {
+				words[index++] = word;
+			}
+		}
+
+		int chunk = Math.max(CHUNK, size / (4 * ForkJoinPool.getCommonPoolParallelism()));
+		return ForkJoinPool.commonPool().invoke(new AccumulateTask(words, 0, size, chunk, documents, scorer));
+	}
+
+	/**
+	 * Adds the frequencies of the postings of a word found to the counts of the locations it's found in.
+	 *
+	 * @param accumulators the counts of the search results, indexed by location ID
+	 * @param postings the postings of the word found
+	 */
+	private static void searchLocations(int[] accumulators, PostingList postings) {
+		for (int i = 0; i < postings.size(); i++) {
+			accumulators[postings.getDocument(i)] += postings.getFrequency(i);
+		}
+	}
+
+	/**
+	 * Creates a search result for every location with a nonzero count. Scores are
+	 * computed from the given word counts, which should be captured once per search so
+	 * scoring never calls back into the index.
+	 *
+	 * @param accumulators the counts of the search results, indexed by location ID
+	 * @param lengths the word counts of the locations, indexed by location ID
+	 * @return unsorted list of search results
+	 */
+	protected List<SearchResult> collectResults(int[] accumulators, int[] lengths) {
+		int size = 0;
+
+		for (int count : accumulators) {
+			size += count > 0 ? 1 : 0;
+		}
+
+		int[] ids = new int[size];
+		int[] found = new int[size];
+		int index = 0;
+
+		for (int id = 0; id < accumulators.length; id++) {
+			if (accumulators[id] > 0) {
+				ids[index] = id;
+				found[index] = accumulators[id];
+				index++;
+			}
+		}
+		return createResults(size, ids, found, lengths);
+	}
+
+	/**
+	 * Creates a search result for each of the given locations. The locations are looked up
+	 * all at once, so neither creating nor sorting the results calls back into the index.
+	 *
+	 * @param size the number of search results
+	 * @param ids the location ID of each search result
+	 * @param found the count of each search result
+	 * @param lengths the word counts of the locations, indexed by location ID
+	 * @return unsorted list of search results
+	 *
+	 * @see #lookupLocations(int[], int)
+	 */
+	protected List<SearchResult> createResults(int size, int[] ids, int[] found, int[] lengths) {
+		String[] locations = lookupLocations(ids, size);
+		List<SearchResult> results = new ArrayList<>(size);
+
+		for (int i = 0; i < size; i++) {
+			results.add(new SearchResult(ids[i], locations[i], found[i], found[i] / (double) lengths[ids[i]]));
+		}
+		return results;
+	}
+
+	/**
+	 * Nested class that adds up the postings of a chunk of words into its own accumulators,
+	 * splitting chunks that are too large in half.
+	 */
+	private static class AccumulateTask extends RecursiveTask<int[]> {
+
+		/** Identifier used for serialization (unused). */
+		private static final long serialVersionUID = 1L;
+
+		/** The term ordinals of every word found. */
+		private final int[] words;
+
+		/** The index of the first word of the chunk. */
+		private final int start;
+
+		/** The index after the last word of the chunk. */
+		private final int end;
+
+		/** The most words added up without splitting. */
+		private final int chunk;
+
+		/** The number of locations in the index. */
+		private final int documents;
+
+		/** Adds the postings of a word to the accumulators. */
+		private final transient ObjIntConsumer<int[]> scorer;
+
+		/**
+		 * Initializes the task.
+		 *
+		 * @param words the term ordinals of every word found
+		 * @param start the index of the first word of the chunk
+		 * @param end the index after the last word of the chunk
+		 * @param chunk the most words added up without splitting
+		 * @param documents the number of locations in the index
+		 * @param scorer adds the postings of the given word to the given accumulators
+		 */
+		public AccumulateTask(int[] words, int start, int end, int chunk, int documents, ObjIntConsumer<int[]> scorer) {
+			this.words = words;
+			this.start = start;
+			this.end = end;
+			this.chunk = chunk;
+			this.documents = documents;
+			this.scorer = scorer;
+		}
+
+		@Override
+		protected int[] compute() {
+			if (end - start <= chunk) {
+				int[] accumulators = new int[documents];
+
+				for (int i = start; i < end; i++) {
+					scorer.accept(accumulators, words[i]);
+				}
+				return accumulators;
+			}
+
+			int middle = (start + end) >>> 1;
+			AccumulateTask left = new AccumulateTask(words, start, middle, chunk, documents, scorer);
+			left.fork();
+
+			int[] accumulators = new AccumulateTask(words, middle, end, chunk, documents, scorer).compute();
+			int[] other = left.join();
+
+			for (int id = 0; id < documents; id++) {
+				accumulators[id] += other[id];
+			}
+			return accumulators;
+		}
+	}
+
+	/**
+	 * Nested class that walks the sorted words of one index being merged.
+	 */
+	private static class Cursor implements Comparable<Cursor> {
+
+		/** The position of the index in the list of indexes being merged. */
+		private final int source;
+
+		/** Iterates over the sorted words of the index. */
+		private final Iterator<Map.Entry<String, PostingList>> iterator;
+
+		/** The current word. */
+		private String word;
+
+		/** The postings of the current word. */
+		private PostingList postings;
+
+		/**
+		 * Initializes the cursor before the first word.
+		 *
+		 * @param source the position of the index in the list of indexes being merged
+		 * @param iterator the iterator over the sorted words of the index
+		 */
+		public Cursor(int source, Iterator<Map.Entry<String, PostingList>> iterator) {
+			this.source = source;
+			this.iterator = iterator;
+		}
+
+		/**
+		 * Moves to the next word.
+		 *
+		 * @return true if there was a next word
+		 */
+		public boolean advance() {
+			if (!iterator.hasNext()) {
+				return false;
 			}
+
+			Map.Entry<String, PostingList> entry = iterator.next();
+			word = entry.getKey();
+			postings = entry.getValue();
+			return true;
+		}
+
+		/**
+		 * Orders cursors by their current word, then by the order of their indexes.
+		 */
+		@Override
+		public int compareTo(Cursor other) {
+			int compared = word.compareTo(other.word);
+			return compared != 0 ? compared : Integer.compare(source, other.source);
+		}
+	}
+
+	/**
+	 * Nested data structure class that pairs a term dictionary of the words with their
+	 * posting lists, indexed by term ordinal.
+	 */
+	private static class Dictionary {
+
+		/** The term dictionary of the words. */
+		private final TermDictionary terms;
+
+		/** The posting list of each word, indexed by term ordinal. */
+		private final PostingList[] postings;
+
+		/**
+		 * Builds the term dictionary from the words of the given map.
+		 *
+		 * @param map the map of words to posting lists
+		 */
+		public Dictionary(TreeMap<String, PostingList> map) {
+			terms = new TermDictionary(map.keySet().toArray(new String[0]));
+			postings = map.values().toArray(new PostingList[0]);
+		}
+	}
+
+	/**
+	 * Nested data structure class that pairs a frozen copy of the index with the
+	 * generation of the index it was frozen from.
+	 */
+	private static class FrozenCopy {
+
+		/** The frozen copy of the index. */
+		private final FrozenIndex index;
+
+		/** The generation of the index the copy was frozen from. */
+		private final long generation;
+
+		/**
+		 * Initializes the frozen copy.
+		 *
+		 * @param index the frozen copy of the index
+		 * @param generation the generation of the index the copy was frozen from
+		 */
+		public FrozenCopy(FrozenIndex index, long generation) {
+			this.index = index;
+			this.generation = generation;
 		}
 	}
 }
\ No newline at end of file
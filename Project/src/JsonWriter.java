@@ -54,6 +54,30 @@ public class JsonWriter {
 		indent("]", writer, level - 1);
 	}
 
+	/**
+	 * Writes the primitive elements as a pretty JSON array.
+	 *
+	 * @param elements the elements to write
+	 * @param writer   the writer to use
+	 * @param level    the initial indent level
+	 * @throws IOException
+	 *
+	 * @see #asArray(Collection, Writer, int)
+	 */
+	public static void asArray(int[] elements, Writer writer, int level) throws IOException {
+
+		writer.write("[");
+		level++;
+
+		for (int i = 0; i < elements.length; i++) {
+			writer.write(i == 0 ? "\n" : ",\n");
+			indent(Integer.toString(elements[i]), writer, level);
+		}
+
+		writer.write("\n");
+		indent("]", writer, level - 1);
+	}
+
 	/**
 	 * Writes the elements as a pretty JSON array to file.
 	 *
@@ -319,6 +343,90 @@ public class JsonWriter {
 		}
 	}
 
+	/**
+	 * Writes the words, locations, and positions of an inverted index as a double-nested
+	 * pretty JSON object. Locations are looked up in the index's document table and
+	 * written in sorted order.
+	 *
+	 * @param index the index to write
+	 * @param writer the writer to use
+	 * @param level the initial indent level
+	 * @throws IOException
+	 */
+	public static void asIndexObject(InvertedIndex index, Writer writer, int level) throws IOException {
+
+		writer.write("{");
+		var iterator = index.getWords().iterator();
+		level++;
+
+		if (iterator.hasNext()) {
+			writer.write("\n");
+			writeIndexEntry(index, iterator.next(), writer, level);
+		}
+
+		while (iterator.hasNext()) {
+			writer.write(",");
+			writer.write("\n");
+			writeIndexEntry(index, iterator.next(), writer, level);
+		}
+
+		writer.write("\n");
+		indent("}", writer, level - 1);
+	}
+
+	/**
+	 * Writes a word of an inverted index as key = value (nested object) pair.
+	 *
+	 * @param index the index to write from
+	 * @param word the word to write
+	 * @param writer the writer to use
+	 * @param level the level to indent
+	 * @throws IOException
+	 */
+	private static void writeIndexEntry(InvertedIndex index, String word, Writer writer, int level) throws IOException {
+		quote(word, writer, level);
+		writer.write(": ");
+		writer.write("{");
+
+		var iterator = index.getLocations(word).iterator();
+
+		if (iterator.hasNext()) {
+			writer.write("\n");
+			String location = iterator.next();
+			quote(location, writer, 2);
+			writer.write(": ");
+			asArray(index.getPositions(word, location), writer, 2);
+		}
+
+		while (iterator.hasNext()) {
+			writer.write(",");
+			writer.write("\n");
+			String location = iterator.next();
+			quote(location, writer, 2);
+			writer.write(": ");
+			asArray(index.getPositions(word, location), writer, 2);
+		}
+
+		writer.write("\n");
+		indent("}", writer, 1);
+	}
+
+	/**
+	 * Writes the words, locations, and positions of an inverted index as a double-nested
+	 * pretty JSON object to file.
+	 *
+	 * @param index the index to write
+	 * @param path the file path to use
+	 * @throws IOException
+	 *
+	 * @see #asIndexObject(InvertedIndex, Writer, int)
+	 */
+	public static void asIndexObject(InvertedIndex index, Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			asIndexObject(index, writer, 0);
+		}
+	}
+
 	/**
 	 * Writes query results as a nested pretty JSON object to file.
 	 *
@@ -486,7 +594,8 @@ public class JsonWriter {
 	}
 
 	/**
-	 * Writes the element surrounded by {@code " "} quotation marks.
+	 * Writes the element surrounded by {@code " "} quotation marks, escaping any quotation
+	 * marks, backslashes, and control characters in it as required by JSON.
 	 *
 	 * @param element the element to write
 	 * @param writer  the writer to use
@@ -494,10 +603,51 @@ public class JsonWriter {
 	 */
 	public static void quote(String element, Writer writer) throws IOException {
 		writer.write('"');
-		writer.write(element);
+
+		// Writes the characters between escaped characters in runs.
+		int start = 0;
+
+		for (int i = 0; i < element.length(); i++) {
+			char c = element.charAt(i);
+
+			if (c == '"' || c == '\\' || c < 0x20) {
+				writer.write(element, start, i - start);
+				writer.write(escape(c));
+				start = i + 1;
+			}
+		}
+
+		writer.write(element, start, element.length() - start);
 		writer.write('"');
 	}
 
+	/**
+	 * Returns the JSON escape sequence of a quotation mark, backslash, or control character.
+	 *
+	 * @param c the character to escape
+	 * @return the escape sequence of the character
+	 */
+	private static String escape(char c) {
+		switch (c) {
+			case '"':
+				return "\\\"";
+			case '\\':
+				return "\\\\";
+			case '\b':
+				return "\\b";
+			case '\f':
+				return "\\f";
+			case '\n':
+				return "\\n";
+			case '\r':
+				return "\\r";
+			case '\t':
+				return "\\t";
+			default:
+				return String.format("\\u%04x", (int) c);
+		}
+	}
+
 	/**
 	 * Indents and then writes the element surrounded by {@code " "} quotation
 	 * marks.
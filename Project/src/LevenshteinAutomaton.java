@@ -0,0 +1,171 @@
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * An automaton that accepts every word within a small edit distance of a query word,
+ * where an edit inserts, deletes, or replaces one character. Each state is a row of the
+ * edit distance table between the query and the characters read so far, so a state
+ * knows both whether the text read so far is accepted and whether any text starting
+ * with it can still be. The latter lets a search prune whole groups of words that share
+ * a prefix instead of comparing the query against every word.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ *
+ * @see TermDictionary#fuzzy(LevenshteinAutomaton)
+ */
+public class LevenshteinAutomaton {
+
+	/** The largest edit distance supported. */
+	public static final int MAX_DISTANCE = 2;
+
+	/** The characters of the query word. */
+	private final char[] query;
+
+	/** The largest edit distance accepted. */
+	private final int distance;
+
+	/**
+	 * Initializes the automaton.
+	 *
+	 * @param query the query word
+	 * @param distance the largest edit distance accepted, from 0 to {@link #MAX_DISTANCE}
+	 */
+	public LevenshteinAutomaton(String query, int distance) {
+		if (distance < 0 || distance > MAX_DISTANCE) {
+			throw new IllegalArgumentException("Edit distance must be between 0 and " + MAX_DISTANCE + ": " + distance);
+		}
+
+		this.query = query.toCharArray();
+		this.distance = distance;
+	}
+
+	/**
+	 * Returns the most characters any accepted word can have, which is also the most
+	 * characters that can be read before every state stops matching.
+	 *
+	 * @return the length of the longest accepted word
+	 */
+	public int getMaxLength() {
+		return query.length + distance;
+	}
+
+	/**
+	 * Returns a new array for holding one state.
+	 *
+	 * @return an array of the size of a state
+	 */
+	public int[] newState() {
+		return new int[query.length + 1];
+	}
+
+	/**
+	 * Sets the state to the start state, before any characters are read.
+	 *
+	 * @param state the state to set
+	 */
+	public void start(int[] state) {
+		for (int i = 0; i < state.length; i++) {
+			state[i] = i;
+		}
+	}
+
+	/**
+	 * Reads one character, moving from the current state to the next.
+	 *
+	 * @param current the current state
+	 * @param next the next character
+	 * @param result the array to store the next state in
+	 * @return true if a word starting with the characters read so far can still be accepted
+	 */
+	public boolean step(int[] current, char next, int[] result) {
+		result[0] = current[0] + 1;
+		int best = result[0];
+
+		for (int i = 1; i < result.length; i++) {
+			int replace = current[i - 1] + (query[i - 1] == next ? 0 : 1);
+			int delete = current[i] + 1;
+			int insert = result[i - 1] + 1;
+
+			result[i] = Math.min(replace, Math.min(delete, insert));
+			best = Math.min(best, result[i]);
+		}
+		return best <= distance;
+	}
+
+	/**
+	 * Returns whether the characters read to reach the state are accepted.
+	 *
+	 * @param state the state reached
+	 * @return true if the word read is within the edit distance of the query
+	 */
+	public boolean isMatch(int[] state) {
+		return state[query.length] <= distance;
+	}
+
+	/**
+	 * Finds the accepted words of a sorted list. Words that share a prefix with the one
+	 * before reuse its states, and once a prefix can no longer be accepted, every word
+	 * that starts with it is skipped at once.
+	 *
+	 * @param size the number of words
+	 * @param words returns the word at each index of the sorted list
+	 * @param skip returns the index of the first word that does not start with the given prefix
+	 * @return the indexes of the accepted words, in ascending order
+	 */
+	public int[] intersect(int size, IntFunction<String> words, ToIntFunction<String> skip) {
+		int[][] states = new int[getMaxLength() + 2][];
+
+		for (int i = 0; i < states.length; i++) {
+			states[i] = newState();
+		}
+		start(states[0]);
+
+		int[] found = new int[8];
+		int count = 0;
+
+		// The previous word and how many of its characters have valid states.
+		String previous = "";
+		int valid = 0;
+		int index = 0;
+
+		while (index < size) {
+			String word = words.apply(index);
+			int depth = 0;
+			int limit = Math.min(valid, word.length());
+
+			while (depth < limit && previous.charAt(depth) == word.charAt(depth)) {
+				depth++;
+			}
+
+			boolean alive = true;
+
+			while (alive && depth < word.length()) {
+				alive = depth < states.length - 1 && step(states[depth], word.charAt(depth), states[depth + 1]);
+				depth++;
+			}
+
+			previous = word;
+
+			if (!alive) {
+				// Skips every word that starts with the prefix that can no longer be accepted.
+				valid = depth - 1;
+				index = Math.max(skip.applyAsInt(word.substring(0, depth)), index + 1);
+				continue;
+			}
+
+			valid = depth;
+
+			if (isMatch(states[depth])) {
+				if (count == found.length) {
+					found = Arrays.copyOf(found, count * 2);
+				}
+				found[count++] = index;
+			}
+			index++;
+		}
+		return Arrays.copyOf(found, count);
+	}
+}
@@ -1,8 +1,26 @@
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import opennlp.tools.stemmer.Stemmer;
 
 /**
- * A multi-threaded version of {@link IndexBuilder} using a read/write lock.
+ * A multi-threaded version of {@link IndexBuilder} using a read/write lock. Each file
+ * is indexed into a local index, and local indexes are added to the shared index in
+ * batches with {@link InvertedIndex#addAll(java.util.Collection)}, which merges a whole
+ * batch in a single pass.
+ *
+ * Files larger than the chunk size are memory-mapped and split into chunks at line
+ * breaks, and each chunk is tokenized, stemmed, and indexed on its own. Lines are never
+ * split, so each chunk gives the same words as reading it line by line. Once every chunk
+ * is done, the positions of each chunk are moved after the words of the chunks before
+ * it, so the positions match indexing the file from start to end.
  *
  * @author CS 212 Software Development
  * @author University of San Francisco
@@ -10,29 +28,354 @@ import java.nio.file.Path;
  */
 public class MultithreadedIndexBuilder extends IndexBuilder {
 
+	/** The number of local indexes added to the shared index at once. */
+	public static final int BATCH = 64;
+
+	/** The default size in bytes of the chunks large files are split into. */
+	public static final int CHUNK_SIZE = 1 << 24;
+
+	/** The size in bytes of the chunks large files are split into. */
+	private static volatile int chunkSize = CHUNK_SIZE;
+
 	/** The work queue used by this class. */
 	private final WorkQueue queue;
 
+	/** Stores the local indexes waiting to be added to the shared index. */
+	private List<InvertedIndex> pending;
+
 	/**
 	 * Initializes the MultithreadedIndexBuilder.
 	 *
-	 * @param index the index to initialize
+	 * @param index the index to initialize, which must be thread-safe such as a
+	 *   {@link ThreadSafeIndex}, {@link SegmentedIndex}, or {@link ShardedIndex}
 	 * @param queue the queue to initialize
 	 */
-	public MultithreadedIndexBuilder(ThreadSafeIndex index, WorkQueue queue) {
+	public MultithreadedIndexBuilder(InvertedIndex index, WorkQueue queue) {
 		super(index);
 		this.queue = queue;
+		this.pending = new ArrayList<>();
 	}
 
 	@Override
 	public void addPath (Path path) throws IOException {
-		queue.execute(new Task(path));
+		if (isLarge(path)) {
+			addLarge(path);
+		}
+		else {
+			queue.execute(new Task(path));
+		}
+	}
+
+	/**
+	 * Sets the size in bytes of the chunks large files are split into. Files no larger
+	 * than one chunk are indexed by a single thread. Applies to every builder.
+	 *
+	 * @param bytes the size of the chunks, or zero or less to never split files
+	 */
+	public static void setChunkSize(int bytes) {
+		chunkSize = bytes > 0 ? bytes : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Returns whether the file is larger than one chunk, and so is split into chunks.
+	 *
+	 * @param path the file to check
+	 * @return true if the file is split into chunks
+	 * @throws IOException if unable to read the size of the file
+	 *
+	 * @see #setChunkSize(int)
+	 */
+	protected static boolean isLarge(Path path) throws IOException {
+		return Files.isRegularFile(path) && Files.size(path) > chunkSize;
+	}
+
+	/**
+	 * Splits a large file into chunks at line breaks and adds a task for each chunk. If a
+	 * line is too long to fit in a single memory map, the whole file is indexed by a
+	 * single thread instead.
+	 *
+	 * @param path the file to add
+	 */
+	private void addLarge(Path path) {
+		List<long[]> chunks = new ArrayList<>();
+
+		try (
+				FileChannel channel = FileChannel.open(path);
+		) {
+			ByteBuffer buffer = ByteBuffer.allocate(8192);
+			long size = channel.size();
+			long start = 0;
+
+			while (start < size) {
+				long end = start + chunkSize >= size ? size : nextLine(channel, start + chunkSize - 1, size, buffer);
+
+				if (end - start > Integer.MAX_VALUE) {
+					queue.execute(new Task(path));
+					return;
+				}
+
+				chunks.add(new long[] { start, end });
+				start = end;
+			}
+		}
+		catch (IOException e) {
+			System.err.println("Unable to add file contents to InvertedIndex at: " + path);
+			return;
+		}
+
+		LargeFile file = new LargeFile(path, chunks.size());
+
+		for (int i = 0; i < chunks.size(); i++) {
+			queue.execute(new ChunkTask(file, i, chunks.get(i)[0], chunks.get(i)[1]));
+		}
+	}
+
+	/**
+	 * Tokenizes, stems, and indexes text line by line, splitting lines the same way as
+	 * {@link java.io.BufferedReader#readLine()}. Positions start from the beginning of the
+	 * text.
+	 *
+	 * @param text the characters of the text
+	 * @param length the number of characters
+	 * @param location the location of the text
+	 * @param local the index to add to
+	 */
+	protected static void addLines(char[] text, int length, String location, InvertedIndex local) {
+		int positionCount = 0;
+
+		Stemmer stemmer = StemCache.get();
+		TextTokenizer tokenizer = new TextTokenizer();
+		int lineStart = 0;
+
+		for (int i = 0; i <= length; i++) {
+			if (i < length && text[i] != '\n' && text[i] != '\r') {
+				continue;
+			}
+
+			if (i == length && lineStart == length) {
+				break;
+			}
+
+			tokenizer.reset(new String(text, lineStart, i - lineStart));
+
+			while (tokenizer.next()) {
+				String stemmedWord = stemmer.stem(tokenizer.token()).toString();
+				local.add(stemmedWord, location, ++positionCount);
+			}
+
+			if (i + 1 < length && text[i] == '\r' && text[i + 1] == '\n') {
+				i++;
+			}
+			lineStart = i + 1;
+		}
+	}
+
+	/**
+	 * Finds the end of the line that contains the given byte of a file. Since UTF-8 never
+	 * uses the byte of a line feed inside another character, the file can be split there.
+	 *
+	 * @param channel the file to search
+	 * @param from the offset of the byte to start from
+	 * @param size the size of the file
+	 * @param buffer the buffer to read into
+	 * @return the offset just after the next line feed, or the size of the file if there is none
+	 * @throws IOException if unable to read the file
+	 */
+	private static long nextLine(FileChannel channel, long from, long size, ByteBuffer buffer) throws IOException {
+		long position = from;
+
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+
+			if (read <= 0) {
+				break;
+			}
+
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
 	}
 
 	@Override
 	public void buildIndex (Path path) throws IOException {
-		super.buildIndex(path);
-		queue.finish();
+		try {
+			// Starts indexing each file as soon as the parallel traversal finds it.
+			// Lists directories with as many threads as the work queue has.
+			DirectoryTraverser.traverseDirectory(path, this::addPath, queue.size());
+		}
+		finally {
+			// Lets the files already found finish even if the traversal failed.
+			queue.finish();
+			flush();
+			index.seal();
+		}
+	}
+
+	/**
+	 * Adds a local index to the batch, and adds the batch to the shared index once it is full.
+	 *
+	 * @param local the local index to add
+	 */
+	protected void addLocal(InvertedIndex local) {
+		List<InvertedIndex> batch = null;
+
+		synchronized (this) {
+			pending.add(local);
+
+			if (pending.size() >= BATCH) {
+				batch = pending;
+				pending = new ArrayList<>();
+			}
+		}
+
+		if (batch != null) {
+			index.addAll(batch);
+		}
+	}
+
+	/**
+	 * Adds the local indexes still waiting in the batch to the shared index. Should be
+	 * called once the queue has finished.
+	 */
+	public void flush() {
+		List<InvertedIndex> batch;
+
+		synchronized (this) {
+			batch = pending;
+			pending = new ArrayList<>();
+		}
+
+		if (!batch.isEmpty()) {
+			index.addAll(batch);
+		}
+	}
+
+	/**
+	 * Tracks the chunks of a large file, and adds them to the shared index once every
+	 * chunk is done.
+	 */
+	private class LargeFile {
+
+		/** The file being added. */
+		private final Path path;
+
+		/** The local index of each chunk, in the order of the file. */
+		private final InvertedIndex[] chunks;
+
+		/** The number of chunks not done yet. */
+		private int remaining;
+
+		/** Whether any chunk was unable to be read. */
+		private boolean failed;
+
+		/**
+		 * Initializes the file.
+		 *
+		 * @param path the file being added
+		 * @param count the number of chunks
+		 */
+		public LargeFile(Path path, int count) {
+			this.path = path;
+			this.chunks = new InvertedIndex[count];
+			this.remaining = count;
+			this.failed = false;
+		}
+
+		/**
+		 * Records that a chunk is done. Once every chunk is done, moves the positions of
+		 * each chunk after the words of the chunks before it and adds the chunks to the
+		 * shared index. If any chunk was unable to be read, none of them are added, the same
+		 * as a file that fails partway through.
+		 *
+		 * @param index the index of the chunk
+		 * @param local the local index of the chunk, or null if it was unable to be read
+		 */
+		public void finish(int index, InvertedIndex local) {
+			synchronized (this) {
+				chunks[index] = local;
+				failed = failed || local == null;
+
+				if (--remaining > 0) {
+					return;
+				}
+			}
+
+			if (failed) {
+				System.err.println("Unable to add file contents to InvertedIndex at: " + path);
+				return;
+			}
+
+			String location = path.toString();
+			int offset = 0;
+
+			for (InvertedIndex chunk : chunks) {
+				Integer count = chunk.getCount(location);
+
+				if (count != null) {
+					chunk.offsetPositions(offset);
+					addLocal(chunk);
+					offset += count;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Nested class that implements Runnable and indexes one chunk of a large file.
+	 */
+	private class ChunkTask implements Runnable {
+
+		/** The file the chunk belongs to. */
+		private final LargeFile file;
+
+		/** The index of the chunk in the file. */
+		private final int index;
+
+		/** The offset of the first byte of the chunk. */
+		private final long start;
+
+		/** The offset just after the last byte of the chunk. */
+		private final long end;
+
+		/**
+		 * Initializes the chunk.
+		 *
+		 * @param file the file the chunk belongs to
+		 * @param index the index of the chunk in the file
+		 * @param start the offset of the first byte of the chunk
+		 * @param end the offset just after the last byte of the chunk
+		 */
+		public ChunkTask(LargeFile file, int index, long start, long end) {
+			this.file = file;
+			this.index = index;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public void run() {
+			InvertedIndex local = new InvertedIndex();
+
+			try (
+					FileChannel channel = FileChannel.open(file.path);
+			) {
+				// Decodes the same way as reading the file, failing on malformed input.
+				CharBuffer chars = StandardCharsets.UTF_8.newDecoder().decode(
+						channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+
+				addLines(chars.array(), chars.limit(), file.path.toString(), local);
+			}
+			catch (IOException e) {
+				local = null;
+			}
+			file.finish(index, local);
+		}
 	}
 
 	/**
@@ -57,7 +400,7 @@ public class MultithreadedIndexBuilder extends IndexBuilder {
 			InvertedIndex local = new InvertedIndex();
 			try {
 				addPath(item, local);
-				index.addAll(local);
+				addLocal(local);
 			}
 			catch (IOException e) {
 				System.err.println("Unable to add file contents to InvertedIndex at: " + item);
@@ -3,7 +3,6 @@ import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 /**
@@ -18,33 +17,64 @@ public class MultithreadedSearchBuilder implements SearchBuilderInterface {
 	/** The work queue used by this class. */
 	private final WorkQueue queue;
 
-	/** Creates an instance of InvertedIndex. */
-	private final InvertedIndex index;
+	/** The cache of search results in front of the index. */
+	private final QueryCache cache;
 
 	/** Stores arguments in key = value pairs regarding query search results. **/
 	private final Map<String, List<InvertedIndex.SearchResult>> queryMap;
 
+	/** The maximum number of search results kept for each query. */
+	private final int limit;
+
+	/**
+	 * Initializes the index and work queue. The index must be safe to search from
+	 * multiple threads, such as a {@link ThreadSafeIndex} or {@link FrozenIndex}.
+	 *
+	 * @param index the index to initialize
+	 * @param queue the queue to initialize
+	 */
+	public MultithreadedSearchBuilder(InvertedIndex index, WorkQueue queue) {
+		this(index, queue, Integer.MAX_VALUE);
+	}
+
 	/**
-	 * Initializes the ThreadSafeIndex and work queue.
+	 * Initializes the index and work queue, keeping only the best results of each query.
 	 *
 	 * @param index the index to initialize
 	 * @param queue the queue to initialize
+	 * @param limit the maximum number of search results kept for each query
+	 *
+	 * @see #MultithreadedSearchBuilder(InvertedIndex, WorkQueue)
+	 */
+	public MultithreadedSearchBuilder(InvertedIndex index, WorkQueue queue, int limit) {
+		this(new QueryCache(index), queue, limit);
+	}
+
+	/**
+	 * Initializes the work queue, searching through the given cache and keeping only the
+	 * best results of each query. The index of the cache must be safe to search from
+	 * multiple threads.
+	 *
+	 * @param cache the cache of search results to search through
+	 * @param queue the queue to initialize
+	 * @param limit the maximum number of search results kept for each query
 	 */
-	public MultithreadedSearchBuilder(ThreadSafeIndex index, WorkQueue queue) {
-		this.index = index;
+	public MultithreadedSearchBuilder(QueryCache cache, WorkQueue queue, int limit) {
+		this.cache = cache;
 		this.queue = queue;
+		this.limit = limit;
 		queryMap = new TreeMap<>();
 	}
 
 	@Override
-	public void buildSearch (Path queryPath, boolean exact) throws IOException {
-		SearchBuilderInterface.super.buildSearch(queryPath, exact);
+	public void buildSearch (Path queryPath, SearchOptions options) throws IOException {
+		SearchBuilderInterface.super.buildSearch(queryPath, options);
 		queue.finish();
 	}
 
 	@Override
-	public void searchLine(String line, boolean exact) {
-		Task task = new Task(line, exact, this);
+	public void searchLine(String line, SearchOptions options) {
+		Task task = new Task(line, options, this);
 		queue.execute(task);
 	}
 
@@ -68,8 +98,8 @@ public class MultithreadedSearchBuilder implements SearchBuilderInterface {
 		/** The line of queries search. */
 		private final String line;
 
-		/** The type of search to perform. */
-		private final boolean exact;
+		/** How to search the line. */
+		private final SearchOptions options;
 
 		/** An instance of this class. */
 		private final MultithreadedSearchBuilder builder;
@@ -78,23 +108,23 @@ public class MultithreadedSearchBuilder implements SearchBuilderInterface {
 		 * Initializes the members of this class.
 		 *
 		 * @param line the line to initialize
-		 * @param exact the exact or partial search to initialize
+		 * @param options how to search the line
 		 * @param builder the search builder to initialize
 		 */
-		public Task(String line, boolean exact, MultithreadedSearchBuilder builder) {
+		public Task(String line, SearchOptions options, MultithreadedSearchBuilder builder) {
 			this.line = line;
-			this.exact = exact;
+			this.options = options;
 			this.builder = builder;
 		}
 
 		@Override
 		public void run() {
-			//Stems line of queries
-			Set<String> querySet = TextStemmer.uniqueStems(line);
-			if (querySet.isEmpty() ) {
+			SearchOptions.Query query = options.parse(line);
+
+			if (query == null) {
 				return;
 			}
-			String joined = String.join(" ", querySet);
+			String joined = query.toString();
 
 			synchronized (builder) {
 				if (queryMap.containsKey(joined)) {
@@ -102,7 +132,7 @@ public class MultithreadedSearchBuilder implements SearchBuilderInterface {
 				}
 			}
 
-			List<InvertedIndex.SearchResult> results = index.search(querySet, exact);
+			List<InvertedIndex.SearchResult> results = query.search(cache, limit);
 
 			synchronized (builder) {
 				queryMap.put(joined, results);
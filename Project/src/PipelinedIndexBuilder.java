@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A version of {@link MultithreadedIndexBuilder} that splits indexing into three stages,
+ * each with its own work queue: reading files, tokenizing and stemming them into local
+ * indexes, and merging the local indexes into the shared index in batches. While one
+ * file waits on the disk, others can be stemmed and merged, instead of every thread
+ * switching between reading and stemming.
+ *
+ * A stage that falls behind blocks the stage feeding it rather than letting read files
+ * or local indexes pile up in memory. The read and merge queues should be bounded with
+ * {@link WorkQueue#WorkQueue(int, int)}. The parse queue may be the work queue shared
+ * with the rest of the program, so reads are held back by the capacity given to the
+ * builder instead of by the queue itself. Stages only ever wait on the stage after them,
+ * so they cannot deadlock. Large files skip the read stage and are split into chunks on
+ * the parse stage instead.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ *
+ * @see WorkQueue
+ */
+public class PipelinedIndexBuilder extends MultithreadedIndexBuilder {
+
+	/** The default number of threads reading files. */
+	public static final int READERS = 2;
+
+	/** The default number of threads merging local indexes. */
+	public static final int MERGERS = 1;
+
+	/** The default number of work requests waiting between stages. */
+	public static final int CAPACITY = 64;
+
+	/** The work queue reading files. */
+	private final WorkQueue readers;
+
+	/** The work queue tokenizing and stemming files. */
+	private final WorkQueue parsers;
+
+	/** The work queue merging local indexes into the shared index. */
+	private final WorkQueue mergers;
+
+	/** The most read files that may wait in the parse queue. */
+	private final int capacity;
+
+	/**
+	 * Initializes the PipelinedIndexBuilder.
+	 *
+	 * @param index the index to initialize, which must be thread-safe such as a
+	 *   {@link ThreadSafeIndex}, {@link SegmentedIndex}, or {@link ShardedIndex}
+	 * @param readers the work queue reading files
+	 * @param parsers the work queue tokenizing and stemming files
+	 * @param mergers the work queue merging local indexes into the shared index
+	 * @param capacity the most read files that may wait in the parse queue
+	 */
+	public PipelinedIndexBuilder(InvertedIndex index, WorkQueue readers, WorkQueue parsers, WorkQueue mergers,
+			int capacity) {
+		super(index, parsers);
+		this.readers = readers;
+		this.parsers = parsers;
+		this.mergers = mergers;
+		this.capacity = capacity;
+	}
+
+	@Override
+	public void addPath (Path path) throws IOException {
+		if (isLarge(path)) {
+			super.addPath(path);
+		}
+		else {
+			readers.execute(new ReadTask(path));
+		}
+	}
+
+	@Override
+	public void buildIndex (Path path) throws IOException {
+		try {
+			// Starts reading each file as soon as the parallel traversal finds it.
+			// Lists directories with as many threads as the reading stage has.
+			DirectoryTraverser.traverseDirectory(path, this::addPath, readers.size());
+		}
+		finally {
+			// Each stage only finishes once the stage before it stops adding work.
+			readers.finish();
+			parsers.finish();
+			mergers.finish();
+			flush();
+			index.seal();
+		}
+	}
+
+	@Override
+	protected void addLocal(InvertedIndex local) {
+		mergers.execute(new MergeTask(local));
+	}
+
+	/**
+	 * Returns the work queue of each stage, in order.
+	 *
+	 * @return the read, parse, and merge work queues
+	 */
+	public List<WorkQueue> getStages() {
+		return List.of(readers, parsers, mergers);
+	}
+
+	@Override
+	public String toString() {
+		return "read: " + readers + "\nparse: " + parsers + "\nmerge: " + mergers;
+	}
+
+	/**
+	 * Nested class that implements Runnable and reads a file.
+	 */
+	private class ReadTask implements Runnable {
+
+		/** The file to read. */
+		private final Path item;
+
+		/**
+		 * Initializes the item.
+		 *
+		 * @param item the file to read
+		 */
+		public ReadTask(Path item) {
+			this.item = item;
+		}
+
+		@Override
+		public void run() {
+			try {
+				byte[] bytes = Files.readAllBytes(item);
+				parsers.execute(new ParseTask(item, bytes), capacity);
+			}
+			catch (IOException e) {
+				System.err.println("Unable to add file contents to InvertedIndex at: " + item);
+			}
+		}
+	}
+
+	/**
+	 * Nested class that implements Runnable and tokenizes and stems a file that was read.
+	 */
+	private class ParseTask implements Runnable {
+
+		/** The file that was read. */
+		private final Path item;
+
+		/** The contents of the file. */
+		private final byte[] bytes;
+
+		/**
+		 * Initializes the file.
+		 *
+		 * @param item the file that was read
+		 * @param bytes the contents of the file
+		 */
+		public ParseTask(Path item, byte[] bytes) {
+			this.item = item;
+			this.bytes = bytes;
+		}
+
+		@Override
+		public void run() {
+			InvertedIndex local = new InvertedIndex();
+
+			try {
+				// Decodes the same way as reading the file, failing on malformed input.
+				CharBuffer chars = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes));
+				addLines(chars.array(), chars.limit(), item.toString(), local);
+				addLocal(local);
+			}
+			catch (IOException e) {
+				System.err.println("Unable to add file contents to InvertedIndex at: " + item);
+			}
+		}
+	}
+
+	/**
+	 * Nested class that implements Runnable and merges a local index into the batch.
+	 */
+	private class MergeTask implements Runnable {
+
+		/** The local index to merge. */
+		private final InvertedIndex local;
+
+		/**
+		 * Initializes the local index.
+		 *
+		 * @param local the local index to merge
+		 */
+		public MergeTask(InvertedIndex local) {
+			this.local = local;
+		}
+
+		@Override
+		public void run() {
+			PipelinedIndexBuilder.super.addLocal(local);
+		}
+	}
+}
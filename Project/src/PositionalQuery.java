@@ -0,0 +1,127 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A query that uses the positions of words: either a phrase written in double quotes,
+ * such as <code>"new york"</code>, or a proximity query written as
+ * <code>word NEAR/k word</code>, which matches when the words are at most k positions
+ * apart in either order.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ *
+ * @see InvertedIndex#phraseSearch(List, int)
+ * @see InvertedIndex#proximitySearch(String, String, int, int)
+ */
+public class PositionalQuery {
+
+	/** Matches a proximity query of two words. */
+	public static final Pattern NEAR_REGEX = Pattern.compile("^\\s*(\\S+)\\s+NEAR/(\\d+)\\s+(\\S+)\\s*$");
+
+	/** The stemmed words of the query, in order. */
+	private final List<String> words;
+
+	/** The largest number of positions the words may be apart, or -1 for a phrase. */
+	private final int distance;
+
+	/**
+	 * Initializes a positional query.
+	 *
+	 * @param words the stemmed words of the query, in order
+	 * @param distance the largest number of positions the words may be apart, or -1 for a phrase
+	 */
+	private PositionalQuery(List<String> words, int distance) {
+		this.words = Collections.unmodifiableList(words);
+		this.distance = distance;
+	}
+
+	/**
+	 * Parses a line of queries as a positional query.
+	 *
+	 * @param line the line to parse
+	 * @return the positional query, or null if the line is not a phrase or proximity query
+	 */
+	public static PositionalQuery parse(String line) {
+		String trimmed = line.strip();
+
+		if (trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+			List<String> phrase = TextStemmer.listStems(trimmed.substring(1, trimmed.length() - 1));
+			return phrase.isEmpty() ? null : new PositionalQuery(phrase, -1);
+		}
+
+		Matcher matcher = NEAR_REGEX.matcher(line);
+
+		if (matcher.matches()) {
+			List<String> near = TextStemmer.listStems(matcher.group(1));
+			List<String> second = TextStemmer.listStems(matcher.group(3));
+
+			if (near.size() == 1 && second.size() == 1) {
+				try {
+					int distance = Integer.parseInt(matcher.group(2));
+					near.addAll(second);
+					return new PositionalQuery(near, distance);
+				}
+				catch (NumberFormatException e) {
+					// The distance is too large to be valid.
+					return null;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Searches the index for the query.
+	 *
+	 * @param index the index to search
+	 * @param k the maximum number of search results to return
+	 * @return a sorted list of at most k search results
+	 */
+	public List<InvertedIndex.SearchResult> search(InvertedIndex index, int k) {
+		if (isPhrase()) {
+			return index.phraseSearch(words, k);
+		}
+		return index.proximitySearch(words.get(0), words.get(1), distance, k);
+	}
+
+	/**
+	 * Returns whether the query is a phrase.
+	 *
+	 * @return true if the query is a phrase, false if it is a proximity query
+	 */
+	public boolean isPhrase() {
+		return distance < 0;
+	}
+
+	/**
+	 * Returns an unmodifiable view of the stemmed words of the query.
+	 *
+	 * @return unmodifiable List
+	 */
+	public List<String> getWords() {
+		return words;
+	}
+
+	/**
+	 * Returns the largest number of positions the words may be apart.
+	 *
+	 * @return the distance, or -1 for a phrase
+	 */
+	public int getDistance() {
+		return distance;
+	}
+
+	/**
+	 * Returns the query with its stemmed words, as used for the keys of search results.
+	 */
+	@Override
+	public String toString() {
+		if (isPhrase()) {
+			return "\"" + String.join(" ", words) + "\"";
+		}
+		return words.get(0) + " NEAR/" + distance + " " + words.get(1);
+	}
+}
@@ -0,0 +1,698 @@
+import java.util.Arrays;
+
+/**
+ * Primitive data structure class that houses the postings of a single word: the IDs of
+ * the locations the word appears in, sorted in ascending order, and the sorted positions
+ * of the word in each of those locations.
+ *
+ * Positions are stored in one flat int array while the list is being built. Once
+ * sealed, the positions of each location are delta-encoded and packed into a byte
+ * array as variable-length integers. Adding to a sealed list unpacks it first.
+ *
+ * Warning: This class is not thread-safe.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class PostingList implements Postings {
+
+	/** The initial capacity of the arrays. */
+	private static final int CAPACITY = 4;
+
+	/** Stores the location IDs in ascending order. */
+	private int[] documents;
+
+	/** Stores the number of positions of each location. */
+	private int[] frequencies;
+
+	/** Stores the offset where the positions of each location start. */
+	private int[] offsets;
+
+	/** Stores the positions of every location while unsealed. */
+	private int[] positions;
+
+	/** Stores the delta-encoded and packed positions of every location once sealed. */
+	private byte[] packed;
+
+	/** The number of locations in the list. */
+	private int size;
+
+	/** The number of positions in the list. */
+	private int length;
+
+	/**
+	 * Initializes an empty posting list.
+	 */
+	public PostingList() {
+		documents = new int[CAPACITY];
+		frequencies = new int[CAPACITY];
+		offsets = new int[CAPACITY];
+		positions = new int[CAPACITY];
+		packed = null;
+		size = 0;
+		length = 0;
+	}
+
+	/**
+	 * Initializes a copy of the other posting list, which can be added to without
+	 * changing the other list. The packed positions of a sealed list are shared, since
+	 * they are never changed in place.
+	 *
+	 * @param other the posting list to copy
+	 */
+	public PostingList(PostingList other) {
+		documents = other.documents.clone();
+		frequencies = other.frequencies.clone();
+		offsets = other.offsets.clone();
+		positions = other.positions == null ? null : other.positions.clone();
+		packed = other.packed;
+		size = other.size;
+		length = other.length;
+	}
+
+	/**
+	 * Adds the position to the given location if it is not already present. Positions
+	 * added in ascending order to the last location are simply appended.
+	 *
+	 * @param document the ID of the location
+	 * @param position the position to add
+	 * @return true if the position was added
+	 */
+	public boolean add(int document, int position) {
+		if (packed != null) {
+			unseal();
+		}
+
+		if (size > 0 && documents[size - 1] == document) {
+			if (positions[length - 1] < position) {
+				insertPosition(size - 1, length, position);
+				return true;
+			}
+			return addPosition(size - 1, position);
+		}
+		else if (size == 0 || documents[size - 1] < document) {
+			insertDocument(size, document);
+			insertPosition(size - 1, length, position);
+			return true;
+		}
+
+		int index = find(document);
+
+		if (index < 0) {
+			index = -(index + 1);
+			insertDocument(index, document);
+			insertPosition(index, offsets[index], position);
+			return true;
+		}
+		return addPosition(index, position);
+	}
+
+	/**
+	 * Adds all of the postings in the other list to this list, mapping the location IDs
+	 * of the other list through the given array. Locations that all come after the
+	 * locations of this list are appended in bulk, other lists are merged in one linear
+	 * pass, and if the mapping does not keep the locations sorted, each position is
+	 * added on its own.
+	 *
+	 * @param other the other list to add
+	 * @param remap the ID in this list of each location ID in the other list
+	 * @return the number of positions that were not already present
+	 */
+	public int addAll(PostingList other, int[] remap) {
+		if (other.size == 0) {
+			return 0;
+		}
+
+		for (int i = 1; i < other.size; i++) {
+			if (remap[other.documents[i - 1]] >= remap[other.documents[i]]) {
+				return addEach(other, remap);
+			}
+		}
+
+		if (packed != null) {
+			unseal();
+		}
+
+		if (size == 0 || documents[size - 1] < remap[other.documents[0]]) {
+			return append(other, remap);
+		}
+		return merge(other, remap);
+	}
+
+	/**
+	 * Adds every position of the other list one at a time.
+	 *
+	 * @param other the other list to add
+	 * @param remap the ID in this list of each location ID in the other list
+	 * @return the number of positions that were not already present
+	 */
+	private int addEach(PostingList other, int[] remap) {
+		int added = 0;
+
+		for (int i = 0; i < other.size; i++) {
+			int document = remap[other.documents[i]];
+
+			for (int position : other.getPositions(i)) {
+				if (add(document, position)) {
+					added++;
+				}
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Appends the postings of the other list, whose remapped location IDs must all be
+	 * greater than the location IDs of this list.
+	 *
+	 * @param other the other list to add
+	 * @param remap the ID in this list of each location ID in the other list
+	 * @return the number of positions added
+	 */
+	private int append(PostingList other, int[] remap) {
+		if (size + other.size > documents.length) {
+			int capacity = Math.max(size + other.size, documents.length * 2);
+			documents = Arrays.copyOf(documents, capacity);
+			frequencies = Arrays.copyOf(frequencies, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+		}
+
+		if (length + other.length > positions.length) {
+			positions = Arrays.copyOf(positions, Math.max(length + other.length, positions.length * 2));
+		}
+
+		for (int i = 0; i < other.size; i++) {
+			documents[size] = remap[other.documents[i]];
+			frequencies[size] = other.frequencies[i];
+			offsets[size] = length;
+			other.copyPositions(i, positions, length);
+			length += other.frequencies[i];
+			size++;
+		}
+		return other.length;
+	}
+
+	/**
+	 * Merges the postings of the other list into this list in one pass over both lists,
+	 * whose remapped location IDs must be in ascending order.
+	 *
+	 * @param other the other list to add
+	 * @param remap the ID in this list of each location ID in the other list
+	 * @return the number of positions that were not already present
+	 */
+	private int merge(PostingList other, int[] remap) {
+		int[] mergedDocuments = new int[size + other.size];
+		int[] mergedFrequencies = new int[mergedDocuments.length];
+		int[] mergedOffsets = new int[mergedDocuments.length];
+		int[] mergedPositions = new int[Math.max(length + other.length, CAPACITY)];
+		int[] buffer = new int[0];
+		int merged = 0;
+		int written = 0;
+		int i = 0;
+		int j = 0;
+
+		while (i < size || j < other.size) {
+			int mine = i < size ? documents[i] : Integer.MAX_VALUE;
+			int theirs = j < other.size ? remap[other.documents[j]] : Integer.MAX_VALUE;
+
+			mergedDocuments[merged] = Math.min(mine, theirs);
+			mergedOffsets[merged] = written;
+
+			if (mine < theirs) {
+				System.arraycopy(positions, offsets[i], mergedPositions, written, frequencies[i]);
+				written += frequencies[i++];
+			}
+			else if (theirs < mine) {
+				other.copyPositions(j, mergedPositions, written);
+				written += other.frequencies[j++];
+			}
+			else {
+				// Merges the sorted positions of both lists, skipping duplicates.
+				if (buffer.length < other.frequencies[j]) {
+					buffer = new int[other.frequencies[j]];
+				}
+				other.copyPositions(j, buffer, 0);
+
+				int a = offsets[i];
+				int aEnd = a + frequencies[i];
+				int b = 0;
+				int bEnd = other.frequencies[j];
+
+				while (a < aEnd || b < bEnd) {
+					if (b == bEnd || (a < aEnd && positions[a] < buffer[b])) {
+						mergedPositions[written++] = positions[a++];
+					}
+					else if (a == aEnd || buffer[b] < positions[a]) {
+						mergedPositions[written++] = buffer[b++];
+					}
+					else {
+						mergedPositions[written++] = positions[a++];
+						b++;
+					}
+				}
+				i++;
+				j++;
+			}
+
+			mergedFrequencies[merged] = written - mergedOffsets[merged];
+			merged++;
+		}
+
+		int added = written - length;
+
+		documents = mergedDocuments;
+		frequencies = mergedFrequencies;
+		offsets = mergedOffsets;
+		positions = mergedPositions;
+		size = merged;
+		length = written;
+
+		return added;
+	}
+
+	/**
+	 * Copies the sorted positions of the location at the given index into the array.
+	 *
+	 * @param index the index of the location
+	 * @param destination the array to copy into
+	 * @param offset the offset to copy to
+	 */
+	private void copyPositions(int index, int[] destination, int offset) {
+		if (packed != null) {
+			int[] decoded = unpack(packed, offsets[index], frequencies[index]);
+			System.arraycopy(decoded, 0, destination, offset, decoded.length);
+		}
+		else {
+			System.arraycopy(positions, offsets[index], destination, offset, frequencies[index]);
+		}
+	}
+
+	/**
+	 * Inserts the position into the sorted positions of the location at the given index.
+	 *
+	 * @param index the index of the location
+	 * @param position the position to add
+	 * @return true if the position was not already present
+	 */
+	private boolean addPosition(int index, int position) {
+		int start = offsets[index];
+		int end = start + frequencies[index];
+		int found = Arrays.binarySearch(positions, start, end, position);
+
+		if (found >= 0) {
+			return false;
+		}
+		insertPosition(index, -(found + 1), position);
+		return true;
+	}
+
+	/**
+	 * Inserts a position at the given offset and shifts the offsets of later locations.
+	 *
+	 * @param index the index of the location the position belongs to
+	 * @param offset the offset to insert the position at
+	 * @param position the position to insert
+	 */
+	private void insertPosition(int index, int offset, int position) {
+		if (length == positions.length) {
+			positions = Arrays.copyOf(positions, length * 2);
+		}
+
+		System.arraycopy(positions, offset, positions, offset + 1, length - offset);
+		positions[offset] = position;
+		length++;
+		frequencies[index]++;
+
+		for (int i = index + 1; i < size; i++) {
+			offsets[i]++;
+		}
+	}
+
+	/**
+	 * Inserts a location with no positions at the given index.
+	 *
+	 * @param index the index to insert the location at
+	 * @param document the ID of the location
+	 */
+	private void insertDocument(int index, int document) {
+		if (size == documents.length) {
+			documents = Arrays.copyOf(documents, size * 2);
+			frequencies = Arrays.copyOf(frequencies, size * 2);
+			offsets = Arrays.copyOf(offsets, size * 2);
+		}
+
+		System.arraycopy(documents, index, documents, index + 1, size - index);
+		System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+		System.arraycopy(offsets, index, offsets, index + 1, size - index);
+
+		documents[index] = document;
+		frequencies[index] = 0;
+		offsets[index] = index == size ? length : offsets[index + 1];
+		size++;
+	}
+
+	/**
+	 * Delta-encodes and packs the positions, and trims the arrays to size.
+	 */
+	public void seal() {
+		if (packed != null) {
+			return;
+		}
+
+		byte[] buffer = new byte[length * 5];
+		int written = 0;
+
+		for (int i = 0; i < size; i++) {
+			int start = offsets[i];
+			int previous = 0;
+			offsets[i] = written;
+
+			for (int j = start; j < start + frequencies[i]; j++) {
+				written = writeVarInt(buffer, written, positions[j] - previous);
+				previous = positions[j];
+			}
+		}
+
+		packed = Arrays.copyOf(buffer, written);
+		positions = null;
+		documents = Arrays.copyOf(documents, size);
+		frequencies = Arrays.copyOf(frequencies, size);
+		offsets = Arrays.copyOf(offsets, size);
+	}
+
+	/**
+	 * Adds the given amount to every position in the list.
+	 *
+	 * @param amount the amount to add
+	 */
+	public void offsetPositions(int amount) {
+		if (packed != null) {
+			unseal();
+		}
+
+		for (int i = 0; i < length; i++) {
+			positions[i] += amount;
+		}
+	}
+
+	/**
+	 * Unpacks the positions so the list can be modified.
+	 */
+	private void unseal() {
+		int[] unpacked = new int[Math.max(length, CAPACITY)];
+		int written = 0;
+
+		for (int i = 0; i < size; i++) {
+			int[] decoded = getPositions(i);
+			offsets[i] = written;
+			System.arraycopy(decoded, 0, unpacked, written, decoded.length);
+			written += decoded.length;
+		}
+
+		positions = unpacked;
+		packed = null;
+
+		if (size == 0) {
+			documents = new int[CAPACITY];
+			frequencies = new int[CAPACITY];
+			offsets = new int[CAPACITY];
+		}
+	}
+
+	/**
+	 * Returns true if the positions have been packed.
+	 *
+	 * @return true if the list is sealed
+	 */
+	public boolean isSealed() {
+		return packed != null;
+	}
+
+	/**
+	 * Returns the number of locations in the list.
+	 *
+	 * @return number of locations
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of positions in the list.
+	 *
+	 * @return number of positions
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Returns the location ID at the given index.
+	 *
+	 * @param index the index of the location
+	 * @return the location ID
+	 */
+	@Override
+	public int getDocument(int index) {
+		return documents[index];
+	}
+
+	/**
+	 * Returns the number of positions of the location at the given index.
+	 *
+	 * @param index the index of the location
+	 * @return the number of positions
+	 */
+	@Override
+	public int getFrequency(int index) {
+		return frequencies[index];
+	}
+
+	/**
+	 * Searches for the index of the given location ID.
+	 *
+	 * @param document the ID of the location to find
+	 * @return the index of the location if present, otherwise (-(insertion point) - 1)
+	 */
+	public int find(int document) {
+		return Arrays.binarySearch(documents, 0, size, document);
+	}
+
+	/**
+	 * Returns a new array of the sorted positions of the location at the given index.
+	 *
+	 * @param index the index of the location
+	 * @return array of positions
+	 */
+	@Override
+	public int[] getPositions(int index) {
+		if (packed != null) {
+			return unpack(packed, offsets[index], frequencies[index]);
+		}
+		return Arrays.copyOfRange(positions, offsets[index], offsets[index] + frequencies[index]);
+	}
+
+	/**
+	 * Returns true if the location at the given index contains the position.
+	 *
+	 * @param index the index of the location
+	 * @param position the position to find
+	 * @return true if the position is in the list
+	 */
+	public boolean contains(int index, int position) {
+		if (packed == null) {
+			int start = offsets[index];
+			return Arrays.binarySearch(positions, start, start + frequencies[index], position) >= 0;
+		}
+
+		return containsPosition(packed, offsets[index], frequencies[index], position);
+	}
+
+	/**
+	 * Decodes the given number of delta-encoded positions starting at the offset.
+	 *
+	 * @param packed the packed positions to decode
+	 * @param offset the offset of the first position
+	 * @param count the number of positions to decode
+	 * @return array of positions
+	 */
+	public static int[] unpack(byte[] packed, int offset, int count) {
+		int[] decoded = new int[count];
+		int previous = 0;
+
+		for (int i = 0; i < count; i++) {
+			int delta = 0;
+			int shift = 0;
+			byte current;
+
+			do {
+				current = packed[offset++];
+				delta |= (current & 0x7F) << shift;
+				shift += 7;
+			} while (current < 0);
+
+			previous += delta;
+			decoded[i] = previous;
+		}
+		return decoded;
+	}
+
+	/**
+	 * Returns true if the given number of delta-encoded positions starting at the offset
+	 * contain the position. Stops decoding once the position has been passed.
+	 *
+	 * @param packed the packed positions to search
+	 * @param offset the offset of the first position
+	 * @param count the number of positions
+	 * @param position the position to find
+	 * @return true if the position is present
+	 */
+	public static boolean containsPosition(byte[] packed, int offset, int count, int position) {
+		int current = 0;
+
+		for (int i = 0; i < count; i++) {
+			int delta = 0;
+			int shift = 0;
+			byte next;
+
+			do {
+				next = packed[offset++];
+				delta |= (next & 0x7F) << shift;
+				shift += 7;
+			} while (next < 0);
+
+			current += delta;
+
+			if (current >= position) {
+				return current == position;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the index of the first element of at least the target in a sorted range of
+	 * the array, starting from the given index. Gallops ahead in growing steps and then
+	 * binary searches.
+	 *
+	 * @param array the array to search
+	 * @param index the index to start from
+	 * @param end the index after the last element of the sorted range
+	 * @param target the value to find
+	 * @return the index of the first element of at least the target, or the end if none
+	 */
+	public static int gallop(int[] array, int index, int end, int target) {
+		if (index >= end || array[index] >= target) {
+			return index;
+		}
+
+		int low = index;
+		int step = 1;
+
+		while (low + step < end && array[low + step] < target) {
+			low += step;
+			step <<= 1;
+		}
+
+		int found = Arrays.binarySearch(array, low + 1, Math.min(low + step + 1, end), target);
+		return found >= 0 ? found : -found - 1;
+	}
+
+	/**
+	 * Counts the occurrences of a phrase in one location, given the sorted positions of each
+	 * word of the phrase in order. Leapfrogs through the positions: every word gallops to
+	 * where the phrase would have to continue, and whenever one overshoots, the start of
+	 * the phrase jumps ahead to match it.
+	 *
+	 * @param positions the sorted positions of each word of the phrase
+	 * @return the number of times the phrase appears
+	 */
+	public static int countPhrase(int[][] positions) {
+		int[] indexes = new int[positions.length];
+		int count = 0;
+		int start = positions[0].length > 0 ? positions[0][0] : 0;
+		int word = 0;
+
+		while (true) {
+			int[] current = positions[word];
+			indexes[word] = gallop(current, indexes[word], current.length, start + word);
+
+			if (indexes[word] >= current.length) {
+				return count;
+			}
+
+			int found = current[indexes[word]];
+
+			if (found != start + word) {
+				// Moves the start of the phrase so this word lines up, and checks every word again.
+				start = found - word;
+				word = 0;
+			}
+			else if (++word == positions.length) {
+				count++;
+				start++;
+				word = 0;
+			}
+		}
+	}
+
+	/**
+	 * Counts the positions of the first word that are within the given distance of any
+	 * position of the second word, in either direction. Walks the first word's positions
+	 * while galloping through the second word's.
+	 *
+	 * @param first the sorted positions of the first word
+	 * @param second the sorted positions of the second word
+	 * @param distance the largest number of positions the words may be apart
+	 * @return the number of positions of the first word near the second
+	 */
+	public static int countNear(int[] first, int[] second, int distance) {
+		int count = 0;
+		int index = 0;
+
+		for (int position : first) {
+			index = gallop(second, index, second.length, position - distance);
+
+			if (index >= second.length) {
+				break;
+			}
+
+			if (second[index] <= position + distance) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Writes the value as a variable-length integer, seven bits per byte.
+	 *
+	 * @param buffer the buffer to write to
+	 * @param offset the offset to write at
+	 * @param value the value to write
+	 * @return the offset after the written value
+	 */
+	public static int writeVarInt(byte[] buffer, int offset, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[offset++] = (byte) value;
+		return offset;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(documents[i]).append('=').append(Arrays.toString(getPositions(i)));
+		}
+		return builder.append('}').toString();
+	}
+}
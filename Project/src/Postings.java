@@ -0,0 +1,85 @@
+/**
+ * A read-only view of the postings of a single word: the IDs of the locations the word
+ * appears in, sorted in ascending order, and the sorted positions of the word in each
+ * of those locations. Used by positional queries to walk the postings of any index.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ *
+ * @see InvertedIndex#phraseSearch(java.util.List, int)
+ */
+public interface Postings {
+
+	/**
+	 * Returns the number of locations in the postings.
+	 *
+	 * @return number of locations
+	 */
+	public int size();
+
+	/**
+	 * Returns the location ID at the given index.
+	 *
+	 * @param index the index of the location
+	 * @return the location ID
+	 */
+	public int getDocument(int index);
+
+	/**
+	 * Returns the number of positions of the location at the given index.
+	 *
+	 * @param index the index of the location
+	 * @return the number of positions
+	 */
+	public int getFrequency(int index);
+
+	/**
+	 * Returns a new array of the sorted positions of the location at the given index.
+	 *
+	 * @param index the index of the location
+	 * @return array of positions
+	 */
+	public int[] getPositions(int index);
+
+	/**
+	 * Returns the index of the first location with an ID of at least the given one,
+	 * starting from the given index. Gallops ahead in growing steps and then binary
+	 * searches, so skipping far ahead costs only the logarithm of the distance.
+	 *
+	 * @param index the index to start from
+	 * @param document the location ID to find
+	 * @return the index of the first location with at least the given ID, or the size if none
+	 */
+	public default int advance(int index, int document) {
+		int size = size();
+
+		if (index >= size || getDocument(index) >= document) {
+			return index;
+		}
+
+		// Gallops until the location ID is passed, then binary searches the last step.
+		int low = index;
+		int step = 1;
+
+		while (low + step < size && getDocument(low + step) < document) {
+			low += step;
+			step <<= 1;
+		}
+
+		int high = Math.min(low + step, size);
+		low++;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (getDocument(middle) < document) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
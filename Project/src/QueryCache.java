@@ -0,0 +1,268 @@
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe cache of search results placed in front of
+ * {@link InvertedIndex#search(Set, boolean, int, boolean)}. Results are keyed by the
+ * sorted query stems, the type of search, and the number of results kept, and are
+ * evicted in least recently used order once the cache holds too many entries or too
+ * many results in total. Every entry remembers the generation of the index it was
+ * computed from and is ignored once the index moves to a new generation.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class QueryCache {
+
+	/** The default maximum number of cached queries. */
+	public static final int CAPACITY = 1024;
+
+	/** The default maximum number of cached search results across all queries. */
+	public static final long WEIGHT = 1 << 20;
+
+	/** The index searched on a cache miss. */
+	private final InvertedIndex index;
+
+	/** Maps each query key to its cached results, in least recently used order. */
+	private final LinkedHashMap<String, Entry> entries;
+
+	/** The maximum number of cached queries. */
+	private final int capacity;
+
+	/** The maximum number of cached search results across all queries. */
+	private final long maxWeight;
+
+	/** The number of search results currently cached. */
+	private long weight;
+
+	/** The number of searches answered from the cache. */
+	private long hits;
+
+	/** The number of searches that had to search the index. */
+	private long misses;
+
+	/**
+	 * Initializes a cache with the default bounds.
+	 *
+	 * @param index the index to search on a cache miss
+	 *
+	 * @see #QueryCache(InvertedIndex, int, long)
+	 */
+	public QueryCache(InvertedIndex index) {
+		this(index, CAPACITY, WEIGHT);
+	}
+
+	/**
+	 * Initializes a cache with the given bounds.
+	 *
+	 * @param index the index to search on a cache miss
+	 * @param capacity the maximum number of cached queries
+	 * @param maxWeight the maximum number of cached search results across all queries
+	 */
+	public QueryCache(InvertedIndex index, int capacity, long maxWeight) {
+		this.index = index;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.capacity = capacity;
+		this.maxWeight = maxWeight;
+		this.weight = 0;
+		this.hits = 0;
+		this.misses = 0;
+	}
+
+	/**
+	 * Returns the search results of the queries from the cache, or searches the index
+	 * and caches them if they are missing or out of date. The index is searched outside
+	 * of the cache lock, so concurrent misses for the same query may both search.
+	 *
+	 * @param queries the sorted, stemmed queries to search for
+	 * @param exactSearch the boolean to decide whether to perform partial or exact search
+	 * @param k the maximum number of search results to return
+	 * @param maxScore whether to use MaxScore retrieval
+	 * @return an unmodifiable sorted list of at most k search results
+	 */
+	public List<InvertedIndex.SearchResult> search(Set<String> queries, boolean exactSearch, int k, boolean maxScore) {
+		return search(queries, exactSearch, k, maxScore, false);
+	}
+
+	/**
+	 * Returns the search results of the queries from the cache, or searches the index
+	 * and caches them if they are missing or out of date, optionally ranked by BM25.
+	 * Ranking by BM25 does not use MaxScore retrieval.
+	 *
+	 * @param queries the sorted, stemmed queries to search for
+	 * @param exactSearch the boolean to decide whether to perform partial or exact search
+	 * @param k the maximum number of search results to return
+	 * @param maxScore whether to use MaxScore retrieval
+	 * @param bm25 whether to rank the search results by BM25
+	 * @return an unmodifiable sorted list of at most k search results
+	 *
+	 * @see InvertedIndex#bm25Search(Set, boolean, int)
+	 */
+	public List<InvertedIndex.SearchResult> search(Set<String> queries, boolean exactSearch, int k,
+			boolean maxScore, boolean bm25) {
+		String key = (exactSearch ? "exact:" : "partial:") + k + ":" + String.join(" ", queries);
+
+		if (bm25) {
+			return lookup("bm25-" + key, () -> index.bm25Search(queries, exactSearch, k));
+		}
+		return lookup(key, () -> index.search(queries, exactSearch, k, maxScore));
+	}
+
+	/**
+	 * Returns the search results of words within the edit distance of the queries from
+	 * the cache, or searches the index and caches them if they are missing or out of date.
+	 *
+	 * @param queries the sorted, stemmed queries to search for
+	 * @param distance the largest edit distance of a word from a query
+	 * @param k the maximum number of search results to return
+	 * @return an unmodifiable sorted list of at most k search results
+	 *
+	 * @see InvertedIndex#fuzzySearch(Set, int, int)
+	 */
+	public List<InvertedIndex.SearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		return lookup("fuzzy" + distance + ":" + k + ":" + String.join(" ", queries),
+				() -> index.fuzzySearch(queries, distance, k));
+	}
+
+	/**
+	 * Returns the search results of a phrase or proximity query from the cache, or searches
+	 * the index and caches them if they are missing or out of date.
+	 *
+	 * @param query the positional query to search for
+	 * @param k the maximum number of search results to return
+	 * @return an unmodifiable sorted list of at most k search results
+	 */
+	public List<InvertedIndex.SearchResult> search(PositionalQuery query, int k) {
+		return lookup("positional:" + k + ":" + query, () -> query.search(index, k));
+	}
+
+	/**
+	 * Returns the search results of a boolean query from the cache, or searches the index
+	 * and caches them if they are missing or out of date.
+	 *
+	 * @param query the boolean query to search for
+	 * @param k the maximum number of search results to return
+	 * @return an unmodifiable sorted list of at most k search results
+	 */
+	public List<InvertedIndex.SearchResult> search(BooleanQuery query, int k) {
+		return lookup("boolean:" + k + ":" + query, () -> index.booleanSearch(query, k));
+	}
+
+	/**
+	 * Returns the cached search results of the key, or runs the search and caches its
+	 * results if they are missing or out of date.
+	 *
+	 * @param key the cache key of the search
+	 * @param search the search to run on a cache miss
+	 * @return an unmodifiable sorted list of search results
+	 */
+	private List<InvertedIndex.SearchResult> lookup(String key, Supplier<List<InvertedIndex.SearchResult>> search) {
+		// Reads the generation before searching, so results found after a change are never kept as current.
+		long current = index.getGeneration();
+
+		synchronized (this) {
+			Entry entry = entries.get(key);
+
+			if (entry != null && entry.generation == current) {
+				hits++;
+				return entry.results;
+			}
+			misses++;
+		}
+
+		List<InvertedIndex.SearchResult> results = Collections.unmodifiableList(search.get());
+
+		synchronized (this) {
+			Entry previous = entries.get(key);
+
+			if (previous != null && previous.generation > current) {
+				// Another thread already cached newer results.
+				return results;
+			}
+
+			if (previous != null) {
+				weight -= previous.results.size() + 1;
+			}
+			entries.put(key, new Entry(results, current));
+			weight += results.size() + 1;
+
+			// Evicts the least recently used queries until the cache is within its bounds.
+			Iterator<Entry> iterator = entries.values().iterator();
+
+			while ((entries.size() > capacity || weight > maxWeight) && iterator.hasNext()) {
+				weight -= iterator.next().results.size() + 1;
+				iterator.remove();
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Removes every cached search.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Returns the number of searches answered from the cache.
+	 *
+	 * @return the number of cache hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of searches that had to search the index.
+	 *
+	 * @return the number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of cached queries.
+	 *
+	 * @return the number of cached queries
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d queries cached, %d hits, %d misses", entries.size(), hits, misses);
+	}
+
+	/**
+	 * Nested data structure class that pairs cached search results with the index
+	 * generation they were computed from.
+	 */
+	private static class Entry {
+
+		/** The cached search results. */
+		private final List<InvertedIndex.SearchResult> results;
+
+		/** The generation of the index the results were computed from. */
+		private final long generation;
+
+		/**
+		 * Initializes a cache entry.
+		 *
+		 * @param results the search results to cache
+		 * @param generation the generation of the index the results were computed from
+		 */
+		public Entry(List<InvertedIndex.SearchResult> results, long generation) {
+			this.results = results;
+			this.generation = generation;
+		}
+	}
+}
@@ -1,8 +1,8 @@
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.DecimalFormat;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
 import javax.servlet.ServletException;
@@ -10,6 +10,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.text.StringEscapeUtils;
+
 /**
  * A servlet class that displays the results of a search engine using the
  * Bulma CSS framework.
@@ -26,8 +28,17 @@ public class ResultsServlet extends HttpServlet {
 	/** The title to use for this webpage. */
 	private static final String TITLE = "On the Hunt";
 
-	/** The search builder used by this class. */
-	private final InvertedIndex index;
+	/** The default number of results to display on each page. */
+	private static final int LIMIT = 50;
+
+	/** The maximum number of results to display on each page. */
+	private static final int MAX_LIMIT = 500;
+
+	/** The number of best results cached for each query, which later pages are served from. */
+	private static final int DEPTH = 1000;
+
+	/** The cache of search results used by this class. */
+	private final QueryCache cache;
 
 	/** The queue of queries used by this class. */
 	private final ConcurrentLinkedDeque<String> queries;
@@ -35,12 +46,12 @@ public class ResultsServlet extends HttpServlet {
 	/**
 	 * Initializes this servlet.
 	 *
-	 * @param index the index to initialize
+	 * @param cache the cache of search results to search through
 	 * @param queries the queue of queries to initialize
 	 */
-	public ResultsServlet(InvertedIndex index, ConcurrentLinkedDeque<String> queries) {
+	public ResultsServlet(QueryCache cache, ConcurrentLinkedDeque<String> queries) {
 		super();
-		this.index = index;
+		this.cache = cache;
 		this.queries = queries;
 	}
 
@@ -48,6 +59,15 @@ public class ResultsServlet extends HttpServlet {
 	protected void doGet(HttpServletRequest request, HttpServletResponse response)
 			throws ServletException, IOException {
 
+		SearchCursor cursor = getCursor(request);
+
+		if ("json".equals(request.getParameter("format"))) {
+			response.setContentType("application/json");
+			response.setStatus(HttpServletResponse.SC_OK);
+			writeJson(response.getWriter(), cursor);
+			return;
+		}
+
 		response.setContentType("text/html");
 		response.setStatus(HttpServletResponse.SC_OK);
 
@@ -86,7 +106,7 @@ public class ResultsServlet extends HttpServlet {
 		out.printf("			<h2 class=\"title\">Results</h2>%n");
 		out.printf("%n");
 
-		writeHtml(out);
+		writeHtml(out, cursor);
 
 		out.printf("%n");
 		out.printf("		</div>%n");
@@ -96,6 +116,7 @@ public class ResultsServlet extends HttpServlet {
 		out.printf("	  <div class=\"content has-text-centered\">%n");
 		out.printf("	    <p>%n");
 		out.printf("	      This request was handled by thread %s.%n", Thread.currentThread().getName());
+		out.printf("	      Result cache: %d hits, %d misses.%n", cache.getHits(), cache.getMisses());
 		out.printf("	    </p>%n");
 		out.printf("	  </div>%n");
 		out.printf("	</footer>%n");
@@ -106,51 +127,180 @@ public class ResultsServlet extends HttpServlet {
 	}
 
 	/**
-	 * Writes search results for query in HTML format.
+	 * Returns the page of search results requested. A cursor from a previous page is used
+	 * if one is given, otherwise the page of the latest query starting at the offset.
 	 *
-	 * @param out the PrintWriter to use
+	 * @param request the request to read the page from
+	 * @return the cursor of the page, or null if there is no query to show
 	 */
-	private void writeHtml(PrintWriter out) {
-		synchronized (queries) {
-			if (!queries.isEmpty()) {
-				// Performs the search.
-				String query = queries.getLast();
-				Set<String> querySet = TextStemmer.uniqueStems(query);
-				List<InvertedIndex.SearchResult> results;
-				if (!querySet.isEmpty()) {
-					results = index.search(querySet, false);
-					int total = results.size();
-
-					// Prints each result and its stats.
-					for (InvertedIndex.SearchResult result : results) {
-						String link = result.getWhere();
-						int count = result.getCount();
-						double score = result.getScore();
-						DecimalFormat df = new DecimalFormat("#.###");
-
-						out.printf("				<div class=\"box\">%n");
-						out.printf("				<a href=\"%s\">%s</a>: %s%n", link, link, count);
-						out.printf("				<p class=\"has-text-grey is-size-7 has-text-right\">Score: %s</p>%n", df.format(score));
-						out.printf("				</div>%n");
-						out.printf("%n");
-					}
-
-					// Prints total number of results.
-					out.printf("	<section class=\"section\">%n");
-					out.printf("		<div class=\"container\">%n");
-					out.printf("			<h2 class=\"title\">Total Number of Results: %s</h2>%n", total);
-					out.printf("%n");
-					out.printf("		</div>%n");
-					out.printf("	</section>%n");
-					out.printf("%n");
-		 		}
-				else {
-					out.printf("				<p>No results.</p>%n");
-				}
-			}
-			else {
-				out.printf("				<p>No results.</p>%n");
+	private SearchCursor getCursor(HttpServletRequest request) {
+		String encoded = request.getParameter("cursor");
+
+		if (encoded != null) {
+			SearchCursor cursor = SearchCursor.decode(encoded);
+
+			if (cursor != null) {
+				return new SearchCursor(cursor.getQuery(), cursor.getOptions(), cursor.getOffset(),
+						Math.min(cursor.getLimit(), MAX_LIMIT));
 			}
 		}
+
+		String query = queries.peekLast();
+
+		if (query == null) {
+			return null;
+		}
+
+		int offset = parseInt(request.getParameter("offset"), 0);
+		int limit = Math.min(parseInt(request.getParameter("limit"), LIMIT), MAX_LIMIT);
+
+		SearchOptions options = SearchOptions.PARTIAL
+				.withMaxScore("maxscore".equals(request.getParameter("retrieval")))
+				.withBm25("bm25".equals(request.getParameter("ranking")))
+				.withDistance(parseInt(request.getParameter("fuzzy"), 0))
+				.withBoolean("boolean".equals(request.getParameter("syntax")))
+				.withPhrase("1".equals(request.getParameter("phrase")));
+
+		return new SearchCursor(query, options, offset, limit);
+	}
+
+	/**
+	 * Parses a request parameter as an integer.
+	 *
+	 * @param value the value of the parameter
+	 * @param defaultValue the value to use if the parameter is missing or invalid
+	 * @return the parsed value
+	 */
+	private static int parseInt(String value, int defaultValue) {
+		try {
+			return value == null ? defaultValue : Integer.parseInt(value);
+		}
+		catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Returns the best search results of the query of the page. Every page of a query is
+	 * served from the same cached list of its best results, so only the first page
+	 * requested searches the index.
+	 *
+	 * @param cursor the cursor of the page
+	 * @return an unmodifiable sorted list of at most {@link #DEPTH} search results
+	 */
+	private List<InvertedIndex.SearchResult> search(SearchCursor cursor) {
+		// Quotes were escaped along with the rest of the query, so the query is parsed from the original text.
+		SearchOptions.Query query = cursor.getOptions().parse(StringEscapeUtils.unescapeHtml4(cursor.getQuery()));
+		return query == null ? Collections.emptyList() : query.search(cache, DEPTH);
+	}
+
+	/**
+	 * Returns the search results on the page.
+	 *
+	 * @param results the best search results of the query
+	 * @param cursor the cursor of the page
+	 * @return a view of the search results on the page
+	 */
+	private static List<InvertedIndex.SearchResult> getPage(List<InvertedIndex.SearchResult> results, SearchCursor cursor) {
+		int start = Math.min(cursor.getOffset(), results.size());
+		int end = (int) Math.min((long) start + cursor.getLimit(), results.size());
+		return results.subList(start, end);
+	}
+
+	/**
+	 * Writes a page of search results in HTML format, with links to the previous and next pages.
+	 *
+	 * @param out the PrintWriter to use
+	 * @param cursor the cursor of the page, or null if there is no query
+	 */
+	private void writeHtml(PrintWriter out, SearchCursor cursor) {
+		List<InvertedIndex.SearchResult> results = cursor == null ? Collections.emptyList() : search(cursor);
+
+		if (results.isEmpty()) {
+			out.printf("				<p>No results.</p>%n");
+			return;
+		}
+
+		List<InvertedIndex.SearchResult> page = getPage(results, cursor);
+		DecimalFormat df = new DecimalFormat("#.###");
+
+		// Prints each result on the page and its stats.
+		for (InvertedIndex.SearchResult result : page) {
+			String link = result.getWhere();
+			int count = result.getCount();
+			double score = result.getScore();
+
+			out.printf("				<div class=\"box\">%n");
+			out.printf("				<a href=\"%s\">%s</a>: %s%n", link, link, count);
+			out.printf("				<p class=\"has-text-grey is-size-7 has-text-right\">Score: %s</p>%n", df.format(score));
+			out.printf("				</div>%n");
+			out.printf("%n");
+		}
+
+		// Prints which results are shown and links to the neighboring pages.
+		int first = Math.min(cursor.getOffset(), results.size());
+
+		out.printf("	<section class=\"section\">%n");
+		out.printf("		<div class=\"container\">%n");
+		out.printf("			<h2 class=\"title\">Results Shown: %d to %d of %s</h2>%n",
+				page.isEmpty() ? first : first + 1, first + page.size(),
+				results.size() < DEPTH ? String.valueOf(results.size()) : "the best " + DEPTH);
+		out.printf("			<nav class=\"pagination\">%n");
+
+		if (first > 0) {
+			out.printf("				<a class=\"pagination-previous\" href=\"/results?cursor=%s\">Previous</a>%n", cursor.previous().encode());
+		}
+
+		if (first + page.size() < results.size()) {
+			out.printf("				<a class=\"pagination-next\" href=\"/results?cursor=%s\">Next</a>%n", cursor.next().encode());
+		}
+
+		out.printf("			</nav>%n");
+		out.printf("%n");
+		out.printf("		</div>%n");
+		out.printf("	</section>%n");
+		out.printf("%n");
+	}
+
+	/**
+	 * Writes a page of search results as a JSON object, with the cursor of the next page
+	 * if there are more results. The number of results available to page through is at
+	 * most {@link #DEPTH}, and the object says whether more results were cut off.
+	 *
+	 * @param out the PrintWriter to use
+	 * @param cursor the cursor of the page, or null if there is no query
+	 * @throws IOException if unable to write the results
+	 */
+	private void writeJson(PrintWriter out, SearchCursor cursor) throws IOException {
+		List<InvertedIndex.SearchResult> results = cursor == null ? Collections.emptyList() : search(cursor);
+		List<InvertedIndex.SearchResult> page = cursor == null ? results : getPage(results, cursor);
+
+		out.write("{\n");
+
+		if (cursor != null) {
+			JsonWriter.quote("query", out, 1);
+			out.write(": ");
+			JsonWriter.quote(StringEscapeUtils.unescapeHtml4(cursor.getQuery()).strip().replaceAll("\\s+", " "), out);
+			out.write(",\n");
+			JsonWriter.quote("offset", out, 1);
+			out.write(": " + cursor.getOffset() + ",\n");
+		}
+
+		// Only the best results are cached, so the number available may be less than the number found.
+		JsonWriter.quote("available", out, 1);
+		out.write(": " + results.size() + ",\n");
+		JsonWriter.quote("truncated", out, 1);
+		out.write(": " + (results.size() >= DEPTH) + ",\n");
+		JsonWriter.quote("results", out, 1);
+		out.write(": ");
+		JsonWriter.asNestedArray(page, out, 1);
+
+		if (cursor != null && cursor.getOffset() + page.size() < results.size()) {
+			out.write(",\n");
+			JsonWriter.quote("next", out, 1);
+			out.write(": ");
+			JsonWriter.quote(cursor.next().encode(), out);
+		}
+		out.write("\n}");
 	}
-}
\ No newline at end of file
+}
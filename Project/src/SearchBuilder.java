@@ -3,7 +3,6 @@ import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 /**
@@ -15,32 +14,59 @@ import java.util.TreeMap;
  */
 public class SearchBuilder implements SearchBuilderInterface {
 
-	/** Creates an instance of InvertedIndex. */
-	private final InvertedIndex index;
+	/** The cache of search results in front of the index. */
+	private final QueryCache cache;
 
 	/** Stores arguments in key = value pairs regarding query search results. **/
 	private final Map<String, List<InvertedIndex.SearchResult>> queryMap;
 
+	/** The maximum number of search results kept for each query. */
+	private final int limit;
+
 	/**
 	 * Initializes the InvertedIndex and queryMap.
 	 *
 	 * @param index the index to initialize
 	 */
 	public SearchBuilder(InvertedIndex index) {
-		this.index = index;
+		this(index, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Initializes the InvertedIndex and queryMap, keeping only the best results of each query.
+	 *
+	 * @param index the index to initialize
+	 * @param limit the maximum number of search results kept for each query
+	 */
+	public SearchBuilder(InvertedIndex index, int limit) {
+		this(new QueryCache(index), limit);
+	}
+
+	/**
+	 * Initializes the queryMap, searching through the given cache and keeping only the best
+	 * results of each query.
+	 *
+	 * @param cache the cache of search results to search through
+	 * @param limit the maximum number of search results kept for each query
+	 */
+	public SearchBuilder(QueryCache cache, int limit) {
+		this.cache = cache;
+		this.limit = limit;
 		queryMap = new TreeMap<>();
 	}
 
 	@Override
-	public void searchLine(String line, boolean exact) {
-		//Stems line of queries
-		Set<String> querySet = TextStemmer.uniqueStems(line);
-		String joined = String.join(" ", querySet);
-
-		if (!querySet.isEmpty() && !queryMap.containsKey(joined)) {
-			List<InvertedIndex.SearchResult> results = index.search(querySet, exact);
- 			queryMap.put(joined, results);
- 		}
+	public void searchLine(String line, SearchOptions options) {
+		SearchOptions.Query query = options.parse(line);
+
+		if (query != null) {
+			// Phrase, proximity, and boolean queries are kept under their stemmed words in order.
+			String key = query.toString();
+
+			if (!queryMap.containsKey(key)) {
+				queryMap.put(key, query.search(cache, limit));
+			}
+		}
 	}
 
 	@Override
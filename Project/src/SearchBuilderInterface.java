@@ -21,8 +21,22 @@ public interface SearchBuilderInterface {
 	 * @param queryPath the path to parse for queries
 	 * @param exact the boolean to perform an exact search
 	 * @throws IOException in unable to access file
+	 *
+	 * @see #buildSearch(Path, SearchOptions)
 	 */
 	public default void buildSearch(Path queryPath, boolean exact) throws IOException {
+		buildSearch(queryPath, SearchOptions.PARTIAL.withExact(exact));
+	}
+
+	/**
+	 * Builds a sorted list of search results from a query file and stores results in queryMap,
+	 * searching each line with the given options.
+	 *
+	 * @param queryPath the path to parse for queries
+	 * @param options how to search each line of queries
+	 * @throws IOException in unable to access file
+	 */
+	public default void buildSearch(Path queryPath, SearchOptions options) throws IOException {
 		// Reads query file line by line.
 		try (
 				BufferedReader reader = Files.newBufferedReader(queryPath, StandardCharsets.UTF_8);
@@ -30,7 +44,7 @@ public interface SearchBuilderInterface {
 			String line = null;
 
 			while ((line = reader.readLine()) != null) {
-				searchLine(line, exact);
+				searchLine(line, options);
 			}
 		}
 	}
@@ -40,8 +54,22 @@ public interface SearchBuilderInterface {
 	 *
 	 * @param line the line to search for
 	 * @param exact boolean on whether to perform exact or partial search
+	 *
+	 * @see #searchLine(String, SearchOptions)
+	 */
+	public default void searchLine(String line, boolean exact) {
+		searchLine(line, SearchOptions.PARTIAL.withExact(exact));
+	}
+
+	/**
+	 * Searches for a single line of queries with the given options and places result in queryMap.
+	 *
+	 * @param line the line to search for
+	 * @param options how to search the line
+	 *
+	 * @see SearchOptions#parse(String)
 	 */
-	public abstract void searchLine(String line, boolean exact);
+	public abstract void searchLine(String line, SearchOptions options);
 
 	/**
 	 * Writes query search results as pretty JSON object to file.
@@ -0,0 +1,145 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * An opaque position in the search results of a query, used to page through them. The
+ * cursor carries the query and how it was searched along with the offset and size of
+ * the page, so later pages show the same query no matter what was searched since.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ *
+ * @see ResultsServlet
+ */
+public class SearchCursor {
+
+	/** The query, as it was entered. */
+	private final String query;
+
+	/** How the query is searched. */
+	private final SearchOptions options;
+
+	/** The index of the first result on the page. */
+	private final int offset;
+
+	/** The maximum number of results on the page. */
+	private final int limit;
+
+	/**
+	 * Initializes a cursor.
+	 *
+	 * @param query the query, as it was entered
+	 * @param options how the query is searched, which is always partial search
+	 * @param offset the index of the first result on the page
+	 * @param limit the maximum number of results on the page
+	 */
+	public SearchCursor(String query, SearchOptions options, int offset, int limit) {
+		this.query = query;
+		this.options = options.withExact(false);
+		this.offset = Math.max(offset, 0);
+		this.limit = Math.max(limit, 1);
+	}
+
+	/**
+	 * Returns the cursor of the next page.
+	 *
+	 * @return the cursor of the next page
+	 */
+	public SearchCursor next() {
+		return new SearchCursor(query, options, offset + limit, limit);
+	}
+
+	/**
+	 * Returns the cursor of the previous page.
+	 *
+	 * @return the cursor of the previous page
+	 */
+	public SearchCursor previous() {
+		return new SearchCursor(query, options, offset - limit, limit);
+	}
+
+	/**
+	 * Encodes the cursor as a string that is safe to use in a URL.
+	 *
+	 * @return the encoded cursor
+	 *
+	 * @see #decode(String)
+	 */
+	public String encode() {
+		String text = offset + ":" + limit + ":" + (options.isMaxScore() ? 1 : 0) + (options.isBm25() ? 1 : 0)
+				+ (options.isBoolean() ? 1 : 0) + (options.isPhrase() ? 1 : 0) + ":" + options.getDistance() + ":"
+				+ query;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a cursor encoded by {@link #encode()}.
+	 *
+	 * @param cursor the encoded cursor
+	 * @return the cursor, or null if it is not a valid cursor
+	 */
+	public static SearchCursor decode(String cursor) {
+		try {
+			String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			String[] parts = text.split(":", 5);
+
+			// Cursors encoded before boolean and phrase queries were optional have fewer flags.
+			if (parts.length < 5 || parts[2].length() < 2 || parts[2].length() > 4) {
+				return null;
+			}
+
+			SearchOptions options = SearchOptions.PARTIAL.withMaxScore(parts[2].charAt(0) == '1')
+					.withBm25(parts[2].charAt(1) == '1').withDistance(Integer.parseInt(parts[3]))
+					.withBoolean(parts[2].length() >= 3 && parts[2].charAt(2) == '1')
+					.withPhrase(parts[2].length() == 4 && parts[2].charAt(3) == '1');
+
+			return new SearchCursor(parts[4], options, Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+		}
+		catch (IllegalArgumentException e) {
+			// Also catches NumberFormatException.
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the query, as it was entered.
+	 *
+	 * @return the query
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Returns how the query is searched.
+	 *
+	 * @return the search options of the query
+	 */
+	public SearchOptions getOptions() {
+		return options;
+	}
+
+	/**
+	 * Returns the index of the first result on the page.
+	 *
+	 * @return the offset of the page
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns the maximum number of results on the page.
+	 *
+	 * @return the size of the page
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	@Override
+	public String toString() {
+		return encode();
+	}
+}
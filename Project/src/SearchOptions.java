@@ -0,0 +1,288 @@
+import java.util.List;
+import java.util.Set;
+
+/**
+ * How a line of queries is searched: exact or partial, with MaxScore retrieval, ranked
+ * by BM25, matching words within an edit distance of the queries, or parsed as a boolean,
+ * phrase, or proximity query. Options are immutable, so each <code>with</code> method
+ * returns a copy with one option changed.
+ *
+ * Lines are parsed and searched the same way everywhere through {@link #parse(String)}.
+ * Phrase and proximity queries come first if they are turned on, then boolean queries if
+ * they are turned on, then fuzzy search if it has a distance, and finally exact or
+ * partial search. Both kinds of query are off unless asked for, so a plain query that
+ * happens to contain quotes, <code>NEAR/k</code>, or an uppercase <code>AND</code>,
+ * <code>OR</code>, or <code>NOT</code> keeps its meaning.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ *
+ * @see SearchBuilderInterface
+ */
+public class SearchOptions {
+
+	/** The options of a plain partial search. */
+	public static final SearchOptions PARTIAL = new SearchOptions(false, false, false, 0, false, false);
+
+	/** The options of a plain exact search. */
+	public static final SearchOptions EXACT = new SearchOptions(true, false, false, 0, false, false);
+
+	/** Whether to perform exact instead of partial search. */
+	private final boolean exact;
+
+	/** Whether to use MaxScore retrieval. */
+	private final boolean maxScore;
+
+	/** Whether to rank the results by BM25. */
+	private final boolean bm25;
+
+	/** The largest edit distance of fuzzy search, or 0 to perform exact or partial search. */
+	private final int distance;
+
+	/** Whether to parse lines with operators as boolean queries. */
+	private final boolean booleanQuery;
+
+	/** Whether to parse quoted lines and lines with NEAR as phrase and proximity queries. */
+	private final boolean phrase;
+
+	/**
+	 * Initializes the options.
+	 *
+	 * @param exact whether to perform exact instead of partial search
+	 * @param maxScore whether to use MaxScore retrieval
+	 * @param bm25 whether to rank the results by BM25
+	 * @param distance the largest edit distance of fuzzy search, or 0 to perform exact or partial search
+	 * @param booleanQuery whether to parse lines with operators as boolean queries
+	 * @param phrase whether to parse quoted lines and lines with NEAR as phrase and proximity queries
+	 */
+	private SearchOptions(boolean exact, boolean maxScore, boolean bm25, int distance, boolean booleanQuery,
+			boolean phrase) {
+		this.exact = exact;
+		this.maxScore = maxScore;
+		this.bm25 = bm25;
+		this.distance = Math.max(0, Math.min(distance, LevenshteinAutomaton.MAX_DISTANCE));
+		this.booleanQuery = booleanQuery;
+		this.phrase = phrase;
+	}
+
+	/**
+	 * Returns a copy of the options with exact or partial search.
+	 *
+	 * @param exact whether to perform exact instead of partial search
+	 * @return the changed options
+	 */
+	public SearchOptions withExact(boolean exact) {
+		return new SearchOptions(exact, maxScore, bm25, distance, booleanQuery, phrase);
+	}
+
+	/**
+	 * Returns a copy of the options with or without MaxScore retrieval.
+	 *
+	 * @param maxScore whether to use MaxScore retrieval
+	 * @return the changed options
+	 *
+	 * @see InvertedIndex#search(Set, boolean, int, boolean)
+	 */
+	public SearchOptions withMaxScore(boolean maxScore) {
+		return new SearchOptions(exact, maxScore, bm25, distance, booleanQuery, phrase);
+	}
+
+	/**
+	 * Returns a copy of the options with or without BM25 ranking.
+	 *
+	 * @param bm25 whether to rank the results by BM25
+	 * @return the changed options
+	 *
+	 * @see InvertedIndex#bm25Search(Set, boolean, int)
+	 */
+	public SearchOptions withBm25(boolean bm25) {
+		return new SearchOptions(exact, maxScore, bm25, distance, booleanQuery, phrase);
+	}
+
+	/**
+	 * Returns a copy of the options with the given fuzzy search edit distance.
+	 *
+	 * @param distance the largest edit distance of fuzzy search, from 1 to
+	 *   {@link LevenshteinAutomaton#MAX_DISTANCE}, or 0 to perform exact or partial search
+	 * @return the changed options
+	 *
+	 * @see InvertedIndex#fuzzySearch(Set, int, int)
+	 */
+	public SearchOptions withDistance(int distance) {
+		return new SearchOptions(exact, maxScore, bm25, distance, booleanQuery, phrase);
+	}
+
+	/**
+	 * Returns a copy of the options with or without boolean queries.
+	 *
+	 * @param booleanQuery whether to parse lines with operators as boolean queries
+	 * @return the changed options
+	 *
+	 * @see BooleanQuery#parse(String)
+	 */
+	public SearchOptions withBoolean(boolean booleanQuery) {
+		return new SearchOptions(exact, maxScore, bm25, distance, booleanQuery, phrase);
+	}
+
+	/**
+	 * Returns a copy of the options with or without phrase and proximity queries.
+	 *
+	 * @param phrase whether to parse quoted lines and lines with NEAR as phrase and proximity queries
+	 * @return the changed options
+	 *
+	 * @see PositionalQuery#parse(String)
+	 */
+	public SearchOptions withPhrase(boolean phrase) {
+		return new SearchOptions(exact, maxScore, bm25, distance, booleanQuery, phrase);
+	}
+
+	/**
+	 * Returns whether to perform exact instead of partial search.
+	 *
+	 * @return true for exact search
+	 */
+	public boolean isExact() {
+		return exact;
+	}
+
+	/**
+	 * Returns whether to use MaxScore retrieval.
+	 *
+	 * @return true if MaxScore retrieval is used
+	 */
+	public boolean isMaxScore() {
+		return maxScore;
+	}
+
+	/**
+	 * Returns whether the results are ranked by BM25.
+	 *
+	 * @return true if the results are ranked by BM25
+	 */
+	public boolean isBm25() {
+		return bm25;
+	}
+
+	/**
+	 * Returns the largest edit distance of fuzzy search.
+	 *
+	 * @return the edit distance, or 0 for exact or partial search
+	 */
+	public int getDistance() {
+		return distance;
+	}
+
+	/**
+	 * Returns whether lines with operators are parsed as boolean queries.
+	 *
+	 * @return true if boolean queries are turned on
+	 */
+	public boolean isBoolean() {
+		return booleanQuery;
+	}
+
+	/**
+	 * Returns whether quoted lines and lines with NEAR are parsed as phrase and proximity
+	 * queries.
+	 *
+	 * @return true if phrase and proximity queries are turned on
+	 */
+	public boolean isPhrase() {
+		return phrase;
+	}
+
+	/**
+	 * Parses a line of queries to be searched with these options.
+	 *
+	 * @param line the line to parse, which must not be escaped
+	 * @return the parsed query, or null if the line has no words to search for
+	 */
+	public Query parse(String line) {
+		Set<String> stems = TextStemmer.uniqueStems(line);
+
+		if (stems.isEmpty()) {
+			return null;
+		}
+
+		PositionalQuery positional = phrase ? PositionalQuery.parse(line) : null;
+		BooleanQuery parsed = positional == null && booleanQuery ? BooleanQuery.parse(line) : null;
+
+		return new Query(this, stems, positional, parsed);
+	}
+
+	@Override
+	public String toString() {
+		return (exact ? "exact" : "partial") + (maxScore ? ", maxscore" : "") + (bm25 ? ", bm25" : "")
+				+ (distance > 0 ? ", fuzzy " + distance : "") + (booleanQuery ? ", boolean" : "")
+				+ (phrase ? ", phrase" : "");
+	}
+
+	/**
+	 * Nested class that is a line of queries parsed with its search options.
+	 */
+	public static class Query {
+
+		/** The options to search with. */
+		private final SearchOptions options;
+
+		/** The sorted, unique stems of the line. */
+		private final Set<String> stems;
+
+		/** The phrase or proximity query of the line, or null if it is not one. */
+		private final PositionalQuery positional;
+
+		/** The boolean query of the line, or null if it is not one. */
+		private final BooleanQuery booleanQuery;
+
+		/**
+		 * Initializes the query.
+		 *
+		 * @param options the options to search with
+		 * @param stems the sorted, unique stems of the line
+		 * @param positional the phrase or proximity query of the line, or null if it is not one
+		 * @param booleanQuery the boolean query of the line, or null if it is not one
+		 */
+		private Query(SearchOptions options, Set<String> stems, PositionalQuery positional, BooleanQuery booleanQuery) {
+			this.options = options;
+			this.stems = stems;
+			this.positional = positional;
+			this.booleanQuery = booleanQuery;
+		}
+
+		/**
+		 * Searches through the cache with the options of the query.
+		 *
+		 * @param cache the cache of search results to search through
+		 * @param k the maximum number of search results to return
+		 * @return an unmodifiable sorted list of at most k search results
+		 */
+		public List<InvertedIndex.SearchResult> search(QueryCache cache, int k) {
+			if (positional != null) {
+				return cache.search(positional, k);
+			}
+
+			if (booleanQuery != null) {
+				return cache.search(booleanQuery, k);
+			}
+
+			if (options.distance > 0) {
+				return cache.fuzzySearch(stems, options.distance, k);
+			}
+			return cache.search(stems, options.exact, k, options.maxScore, options.bm25);
+		}
+
+		/**
+		 * Returns the key the results of the query are kept under: the stemmed words in order
+		 * for phrase and proximity queries, the stemmed words and operators for boolean
+		 * queries, and the sorted unique stems otherwise.
+		 */
+		@Override
+		public String toString() {
+			if (positional != null) {
+				return positional.toString();
+			}
+			return booleanQuery != null ? booleanQuery.toString() : String.join(" ", stems);
+		}
+	}
+}
@@ -20,6 +20,9 @@ public class SearchServer {
 	/** The index used by this class. */
 	private final InvertedIndex index;
 
+	/** The cache of search results used by this class. */
+	private final QueryCache cache;
+
 	/** The queue of queries used by this class. */
 	private final ConcurrentLinkedDeque<String> queries;
 
@@ -30,8 +33,20 @@ public class SearchServer {
 	 * @param index the index to initialize
 	 */
 	public SearchServer(int port, InvertedIndex index) {
+		this(port, index, new QueryCache(index));
+	}
+
+	/**
+	 * Initializes the port and index, searching through the given cache of search results.
+	 *
+	 * @param port the port to initialize
+	 * @param index the index to initialize
+	 * @param cache the cache of search results in front of the index
+	 */
+	public SearchServer(int port, InvertedIndex index, QueryCache cache) {
 		this.PORT = port;
 		this.index = index;
+		this.cache = cache;
 		this.queries = new ConcurrentLinkedDeque<>();
 	}
 
@@ -47,7 +62,7 @@ public class SearchServer {
 		// Displays home page.
 		handler.addServletWithMapping(new ServletHolder(new SearchServlet(queries)), "/");
 		// Displays results page.
-		handler.addServletWithMapping(new ServletHolder(new ResultsServlet(index, queries)), "/results");
+		handler.addServletWithMapping(new ServletHolder(new ResultsServlet(cache, queries)), "/results");
 		// Displays index word counts page.
 		handler.addServletWithMapping(new ServletHolder(new IndexServlet(index)), "/index");
 
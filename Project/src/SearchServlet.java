@@ -2,7 +2,9 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -95,6 +97,41 @@ public class SearchServlet extends HttpServlet {
 		out.printf("				  </div>%n");
 		out.printf("				</div>%n");
 		out.printf("%n");
+		out.printf("				<div class=\"field\">%n");
+		out.printf("				  <label class=\"checkbox\">%n");
+		out.printf("				    <input type=\"checkbox\" name=\"%s\" value=\"%s\">%n", "retrieval", "maxscore");
+		out.printf("				    Top results only (MaxScore)%n");
+		out.printf("				  </label>%n");
+		out.printf("				</div>%n");
+		out.printf("%n");
+		out.printf("				<div class=\"field\">%n");
+		out.printf("				  <label class=\"checkbox\">%n");
+		out.printf("				    <input type=\"checkbox\" name=\"%s\" value=\"%s\">%n", "ranking", "bm25");
+		out.printf("				    Rank by BM25%n");
+		out.printf("				  </label>%n");
+		out.printf("				</div>%n");
+		out.printf("%n");
+		out.printf("				<div class=\"field\">%n");
+		out.printf("				  <label class=\"checkbox\">%n");
+		out.printf("				    <input type=\"checkbox\" name=\"%s\" value=\"%s\">%n", "fuzzy", "1");
+		out.printf("				    Tolerate typos%n");
+		out.printf("				  </label>%n");
+		out.printf("				</div>%n");
+		out.printf("%n");
+		out.printf("				<div class=\"field\">%n");
+		out.printf("				  <label class=\"checkbox\">%n");
+		out.printf("				    <input type=\"checkbox\" name=\"%s\" value=\"%s\">%n", "syntax", "boolean");
+		out.printf("				    Use AND, OR, and NOT%n");
+		out.printf("				  </label>%n");
+		out.printf("				</div>%n");
+		out.printf("%n");
+		out.printf("				<div class=\"field\">%n");
+		out.printf("				  <label class=\"checkbox\">%n");
+		out.printf("				    <input type=\"checkbox\" name=\"%s\" value=\"%s\">%n", "phrase", "1");
+		out.printf("				    Use \"quoted phrases\" and NEAR/k%n");
+		out.printf("				  </label>%n");
+		out.printf("				</div>%n");
+		out.printf("%n");
 		out.printf("				<div class=\"control\">%n");
 		out.printf("			    <button class=\"button is-primary\" type=\"submit\">%n");
 		out.printf("						<i class=\"fas fa-search\"></i>%n");
@@ -166,7 +203,29 @@ public class SearchServlet extends HttpServlet {
 		queries.addLast(query);
 
 		response.setStatus(HttpServletResponse.SC_OK);
-		response.sendRedirect("/results");
+		// Passes the selected retrieval mode and ranking on to the results page.
+		List<String> options = new ArrayList<>();
+
+		if ("maxscore".equals(request.getParameter("retrieval"))) {
+			options.add("retrieval=maxscore");
+		}
+
+		if ("bm25".equals(request.getParameter("ranking"))) {
+			options.add("ranking=bm25");
+		}
+
+		if ("1".equals(request.getParameter("fuzzy"))) {
+			options.add("fuzzy=1");
+		}
+
+		if ("boolean".equals(request.getParameter("syntax"))) {
+			options.add("syntax=boolean");
+		}
+
+		if ("1".equals(request.getParameter("phrase"))) {
+			options.add("phrase=1");
+		}
+		response.sendRedirect(options.isEmpty() ? "/results" : "/results?" + String.join("&", options));
 	}
 
 	/**
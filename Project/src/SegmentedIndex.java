@@ -0,0 +1,734 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * A thread-safe, log-structured {@link InvertedIndex} made of immutable segments.
+ * Instead of merging every added index into one map under the write lock, each index
+ * passed to {@link #addAll(InvertedIndex)} becomes a segment of its own, so the write
+ * lock is only held long enough to register its locations. Single words added with
+ * {@link #add(String, String, Integer)} are buffered until the index is sealed.
+ *
+ * Searches add up the counts of every segment by global ID before creating any search
+ * results, and select the best results once. Whenever {@link #MERGE_FACTOR} segments
+ * of the same level exist, a work queue merges them in the background into one segment
+ * of the next level, which keeps the number of segments logarithmic in the number of
+ * added indexes.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class SegmentedIndex extends InvertedIndex {
+
+	/** The number of segments of the same level that are merged together. */
+	public static final int MERGE_FACTOR = 8;
+
+	/** The lock used to protect concurrent access to the segments. */
+	private final SimpleReadWriteLock lock;
+
+	/** The work queue used to merge segments in the background. */
+	private final WorkQueue queue;
+
+	/** Assigns each location of every segment a global ID. */
+	private final DocumentTable documents;
+
+	/** Stores the word count of each location, indexed by global ID. */
+	private int[] counts;
+
+	/** Stores the immutable segments of the index. */
+	private final List<Segment> segments;
+
+	/** Stores the words added one at a time until the index is sealed. */
+	private InvertedIndex buffer;
+
+	/**
+	 * Initializes an empty segmented index.
+	 *
+	 * @param queue the work queue used to merge segments in the background
+	 */
+	public SegmentedIndex(WorkQueue queue) {
+		super();
+		this.lock = new SimpleReadWriteLock();
+		this.queue = queue;
+		this.documents = new DocumentTable();
+		this.counts = new int[16];
+		this.segments = new ArrayList<>();
+		this.buffer = new InvertedIndex();
+	}
+
+	/**
+	 * Adds the other index as a new segment. The other index is sealed and used
+	 * directly, so it must be a plain {@link InvertedIndex} that is not modified afterwards.
+	 *
+	 * @param other the other InvertedIndex to add
+	 */
+	@Override
+	public void addAll(InvertedIndex other) {
+		other.seal();
+		int size = other.countLocations();
+
+		if (size == 0) {
+			return;
+		}
+
+		lock.writeLock().lock();
+
+		try {
+			int[] ids = new int[size];
+
+			for (int id = 0; id < size; id++) {
+				ids[id] = documents.add(other.getLocation(id));
+				addCount(ids[id], other.getCount(id));
+			}
+
+			segments.add(new Segment(other, ids, 0));
+			nextGeneration();
+			scheduleMerges();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Merges the other indexes into a single new segment.
+	 *
+	 * @param others the other InvertedIndexes to add
+	 */
+	@Override
+	public void addAll(Collection<? extends InvertedIndex> others) {
+		InvertedIndex segment = new InvertedIndex();
+		segment.addAll(others);
+		addAll(segment);
+	}
+
+	@Override
+	public void add(String word, String path, Integer position) {
+		lock.writeLock().lock();
+
+		try {
+			int id = documents.add(path);
+			Integer before = buffer.getCount(path);
+			buffer.add(word, path, position);
+			addCount(id, buffer.getCount(path) - (before == null ? 0 : before));
+			nextGeneration();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Flushes the buffered words into a new segment.
+	 */
+	@Override
+	public void seal() {
+		lock.writeLock().lock();
+
+		try {
+			int size = buffer.countLocations();
+
+			if (size > 0) {
+				buffer.seal();
+				segments.add(new Segment(buffer, getIds(buffer, size), 0));
+				buffer = new InvertedIndex();
+				scheduleMerges();
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Increments the word count of the location with the given global ID, growing the
+	 * counts array if necessary. Must be called while holding the write lock.
+	 *
+	 * @param id the global ID of the location
+	 * @param amount the amount to increment the count by
+	 */
+	private void addCount(int id, int amount) {
+		if (id >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+		}
+		counts[id] += amount;
+	}
+
+	/**
+	 * Returns the global ID of each location of an index whose locations are already
+	 * registered. Must be called while holding the lock.
+	 *
+	 * @param index the index whose locations to look up
+	 * @param size the number of locations in the index
+	 * @return the global ID of each location ID of the index
+	 */
+	private int[] getIds(InvertedIndex index, int size) {
+		int[] ids = new int[size];
+
+		for (int id = 0; id < size; id++) {
+			ids[id] = documents.getId(index.getLocation(id));
+		}
+		return ids;
+	}
+
+	/**
+	 * Queues a merge for every level with at least {@link #MERGE_FACTOR} segments that
+	 * are not already being merged. Must be called while holding the write lock.
+	 */
+	private void scheduleMerges() {
+		TreeMap<Integer, List<Segment>> levels = new TreeMap<>();
+
+		for (Segment segment : segments) {
+			if (!segment.merging) {
+				levels.computeIfAbsent(segment.level, level -> new ArrayList<>()).add(segment);
+			}
+		}
+
+		for (List<Segment> level : levels.values()) {
+			if (level.size() >= MERGE_FACTOR) {
+				List<Segment> sources = new ArrayList<>(level.subList(0, MERGE_FACTOR));
+
+				for (Segment segment : sources) {
+					segment.merging = true;
+				}
+				queue.execute(new MergeTask(sources));
+			}
+		}
+	}
+
+	/**
+	 * Returns the indexes of every segment and the buffer. Must be called while holding the lock.
+	 *
+	 * @return list of indexes
+	 */
+	private List<InvertedIndex> getIndexes() {
+		List<InvertedIndex> indexes = new ArrayList<>(segments.size() + 1);
+
+		for (Segment segment : segments) {
+			indexes.add(segment.index);
+		}
+		indexes.add(buffer);
+		return indexes;
+	}
+
+	/**
+	 * Combines every segment into a single new index. Must be called while holding the lock.
+	 *
+	 * @return the combined index
+	 */
+	private InvertedIndex merge() {
+		InvertedIndex merged = new InvertedIndex();
+		merged.addAll(getIndexes());
+		merged.seal();
+		return merged;
+	}
+
+	@Override
+	public FrozenIndex freeze() {
+		lock.readLock().lock();
+
+		try {
+			return merge().freeze();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void writeIndex(Path path) throws IOException {
+		lock.readLock().lock();
+
+		try {
+			merge().writeIndex(path);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void writeCounts(Path path) throws IOException {
+		lock.readLock().lock();
+
+		try {
+			TreeMap<String, Integer> countsMap = new TreeMap<>();
+
+			for (int id = 0; id < documents.size(); id++) {
+				countsMap.put(documents.getLocation(id), counts[id]);
+			}
+			JsonWriter.asObject(countsMap, path);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<String> getPaths() {
+		lock.readLock().lock();
+
+		try {
+			return documents.getLocations();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Integer getCount(String path) {
+		lock.readLock().lock();
+
+		try {
+			int id = documents.getId(path);
+			return id < 0 ? null : counts[id];
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int getCount(int id) {
+		lock.readLock().lock();
+
+		try {
+			return counts[id];
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	protected int[] getCounts() {
+		lock.readLock().lock();
+
+		try {
+			return Arrays.copyOf(counts, documents.size());
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	protected String[] lookupLocations(int[] ids, int size) {
+		lock.readLock().lock();
+
+		try {
+			String[] locations = new String[size];
+
+			for (int i = 0; i < size; i++) {
+				locations[i] = documents.getLocation(ids[i]);
+			}
+			return locations;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public String getLocation(int id) {
+		lock.readLock().lock();
+
+		try {
+			return documents.getLocation(id);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<String> getWords() {
+		lock.readLock().lock();
+
+		try {
+			TreeSet<String> words = new TreeSet<>();
+
+			for (InvertedIndex index : getIndexes()) {
+				words.addAll(index.getWords());
+			}
+			return Collections.unmodifiableSet(words);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Counts the words that start with the prefix in the term dictionary of the first
+	 * segment, then only walks the matching words of the others, counting each word in
+	 * the first segment or buffer that has it.
+	 */
+	@Override
+	public int countWords(String prefix) {
+		lock.readLock().lock();
+
+		try {
+			List<InvertedIndex> indexes = getIndexes();
+			int count = indexes.get(0).countWords(prefix);
+
+			for (int i = 1; i < indexes.size(); i++) {
+				for (String word : indexes.get(i).listWords(prefix)) {
+					if (!contains(indexes, i, word)) {
+						count++;
+					}
+				}
+			}
+			return count;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns whether any of the first indexes contains the word.
+	 *
+	 * @param indexes the indexes of the segments and the buffer
+	 * @param end the number of indexes to look in
+	 * @param word the word to look for
+	 * @return true if one of the first indexes contains the word
+	 */
+	private static boolean contains(List<InvertedIndex> indexes, int end, String word) {
+		for (int i = 0; i < end; i++) {
+			if (indexes.get(i).contains(word)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	protected List<String> listWords(String prefix) {
+		lock.readLock().lock();
+
+		try {
+			TreeSet<String> words = new TreeSet<>();
+
+			for (InvertedIndex index : getIndexes()) {
+				words.addAll(index.listWords(prefix));
+			}
+			return new ArrayList<>(words);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		lock.readLock().lock();
+
+		try {
+			TreeSet<String> locations = new TreeSet<>();
+
+			for (InvertedIndex index : getIndexes()) {
+				locations.addAll(index.getLocations(word));
+			}
+			return Collections.unmodifiableSet(locations);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int[] getPositions(String word, String location) {
+		lock.readLock().lock();
+
+		try {
+			int[] positions = new int[0];
+
+			for (InvertedIndex index : getIndexes()) {
+				int[] found = index.getPositions(word, location);
+
+				if (found.length > 0) {
+					int length = positions.length;
+					positions = Arrays.copyOf(positions, length + found.length);
+					System.arraycopy(found, 0, positions, length, found.length);
+				}
+			}
+
+			// Sorts and removes duplicates in case the positions span several segments.
+			Arrays.sort(positions);
+			int unique = 0;
+
+			for (int i = 0; i < positions.length; i++) {
+				if (i == 0 || positions[i] != positions[i - 1]) {
+					positions[unique++] = positions[i];
+				}
+			}
+			return Arrays.copyOf(positions, unique);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean containsCount(String path) {
+		lock.readLock().lock();
+
+		try {
+			return documents.contains(path);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(String word) {
+		lock.readLock().lock();
+
+		try {
+			for (InvertedIndex index : getIndexes()) {
+				if (index.contains(word)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		lock.readLock().lock();
+
+		try {
+			for (InvertedIndex index : getIndexes()) {
+				if (index.contains(word, location)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(String word, String location, Integer position) {
+		lock.readLock().lock();
+
+		try {
+			for (InvertedIndex index : getIndexes()) {
+				if (index.contains(word, location, position)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		lock.readLock().lock();
+
+		try {
+			return merge().toString();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Combines the postings of the word in every segment and the buffer into a new
+	 * posting list with global IDs.
+	 */
+	@Override
+	protected Postings getPostings(String word) {
+		lock.readLock().lock();
+
+		try {
+			PostingList combined = new PostingList();
+
+			for (Segment segment : segments) {
+				addPostings(combined, segment.index.getPostings(word), segment.ids);
+			}
+
+			int size = buffer.countLocations();
+			addPostings(combined, buffer.getPostings(word), size == 0 ? new int[0] : getIds(buffer, size));
+
+			return combined.size() == 0 ? null : combined;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds the postings of a segment to the combined postings, mapping their location IDs
+	 * to global IDs.
+	 *
+	 * @param combined the combined postings to add to
+	 * @param postings the postings to add, or null if the segment does not have the word
+	 * @param ids the global ID of each location ID of the segment
+	 */
+	private static void addPostings(PostingList combined, Postings postings, int[] ids) {
+		if (postings != null) {
+			for (int i = 0; i < postings.size(); i++) {
+				for (int position : postings.getPositions(i)) {
+					combined.add(ids[postings.getDocument(i)], position);
+				}
+			}
+		}
+	}
+
+	@Override
+	public List<SearchResult> search(Set<String> queries, boolean exactSearch, int k) {
+		return search(index -> index.countMatches(queries, exactSearch), k);
+	}
+
+	@Override
+	public List<SearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		return search(index -> index.countFuzzyMatches(queries, distance), k);
+	}
+
+	/**
+	 * Counts the matches in every segment and the buffer, adds them up by global ID, and
+	 * only creates and selects search results once at the end.
+	 *
+	 * @param search returns the counts of the given segment or buffer, indexed by its own location IDs
+	 * @param k the maximum number of search results to return
+	 * @return a sorted list of at most k search results
+	 */
+	private List<SearchResult> search(Function<InvertedIndex, int[]> search, int k) {
+		lock.readLock().lock();
+
+		try {
+			int[] accumulators = new int[documents.size()];
+
+			for (Segment segment : segments) {
+				addCounts(accumulators, search.apply(segment.index), segment.ids);
+			}
+
+			int size = buffer.countLocations();
+
+			if (size > 0) {
+				addCounts(accumulators, search.apply(buffer), getIds(buffer, size));
+			}
+
+			return selectTop(collectResults(accumulators, counts), k);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds the counts found in a segment to the counts of every segment, mapping their
+	 * location IDs to global IDs.
+	 *
+	 * @param accumulators the counts of the search results, indexed by global ID
+	 * @param found the counts found in the segment, indexed by location ID of the segment
+	 * @param ids the global ID of each location ID of the segment
+	 */
+	private static void addCounts(int[] accumulators, int[] found, int[] ids) {
+		for (int id = 0; id < found.length; id++) {
+			if (found[id] > 0) {
+				accumulators[ids[id]] += found[id];
+			}
+		}
+	}
+
+	/**
+	 * Nested data structure class that pairs an immutable segment with the global ID
+	 * of each of its locations.
+	 */
+	private static class Segment {
+
+		/** The sealed index of the segment, which is never modified. */
+		private final InvertedIndex index;
+
+		/** Stores the global ID of each location ID of the segment. */
+		private final int[] ids;
+
+		/** The number of times the segment's contents have been merged. */
+		private final int level;
+
+		/** Whether the segment is being merged. */
+		private boolean merging;
+
+		/**
+		 * Initializes the segment.
+		 *
+		 * @param index the sealed index of the segment
+		 * @param ids the global ID of each location ID of the segment
+		 * @param level the number of times the segment's contents have been merged
+		 */
+		public Segment(InvertedIndex index, int[] ids, int level) {
+			this.index = index;
+			this.ids = ids;
+			this.level = level;
+			this.merging = false;
+		}
+	}
+
+	/**
+	 * Nested class that merges segments into one segment of the next level.
+	 */
+	private class MergeTask implements Runnable {
+
+		/** The segments to merge. */
+		private final List<Segment> sources;
+
+		/**
+		 * Initializes the segments to merge.
+		 *
+		 * @param sources the segments to merge
+		 */
+		public MergeTask(List<Segment> sources) {
+			this.sources = sources;
+		}
+
+		@Override
+		public void run() {
+			// Builds the merged segment without holding the lock, since segments are immutable.
+			List<InvertedIndex> indexes = new ArrayList<>(sources.size());
+
+			for (Segment segment : sources) {
+				indexes.add(segment.index);
+			}
+
+			InvertedIndex merged = new InvertedIndex();
+			merged.addAll(indexes);
+			merged.seal();
+
+			int size = merged.countLocations();
+
+			lock.writeLock().lock();
+
+			try {
+				segments.removeAll(sources);
+				segments.add(new Segment(merged, getIds(merged, size), sources.get(0).level + 1));
+				scheduleMerges();
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,616 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+/**
+ * A thread-safe {@link InvertedIndex} that partitions words by hash across several
+ * sub-indexes, each protected by its own read/write lock. Adding a word only locks the
+ * shard of that word, and searches only lock the shards of the words they look up, so
+ * writers and readers of different words do not block each other.
+ *
+ * Locations and their word counts are shared by every shard and are referred to by
+ * global IDs. Each shard maps the IDs of its own sub-index to global IDs, so searches add
+ * up the counts of every shard by global ID and only create search results once. Word
+ * counts are atomic, so adding words never takes a lock shared by every shard.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class ShardedIndex extends InvertedIndex {
+
+	/** The default number of shards. */
+	public static final int DEFAULT = 16;
+
+	/** Stores the shards of the index. */
+	private final Shard[] shards;
+
+	/** The number of bits of a global ID that pick its word count within a block. */
+	private static final int BLOCK = 10;
+
+	/** Maps each location to its global ID. */
+	private final ConcurrentHashMap<String, Integer> ids;
+
+	/** Stores the location of each global ID, replaced by a larger copy as locations are added. */
+	private volatile String[] locations;
+
+	/** Stores the word count of each global ID in blocks that are never copied once created. */
+	private volatile AtomicIntegerArray[] counts;
+
+	/** The number of locations with global IDs. */
+	private volatile int size;
+
+	/** The lock used to assign global IDs to new locations. */
+	private final Object lock;
+
+	/**
+	 * Initializes a sharded index with the default number of shards.
+	 *
+	 * @see #ShardedIndex(int)
+	 */
+	public ShardedIndex() {
+		this(DEFAULT);
+	}
+
+	/**
+	 * Initializes a sharded index with the given number of shards.
+	 *
+	 * @param shards the number of shards; should be at least 1
+	 */
+	public ShardedIndex(int shards) {
+		super();
+		this.shards = new Shard[Math.max(shards, 1)];
+
+		for (int i = 0; i < this.shards.length; i++) {
+			this.shards[i] = new Shard();
+		}
+
+		this.ids = new ConcurrentHashMap<>();
+		this.locations = new String[16];
+		this.counts = new AtomicIntegerArray[0];
+		this.size = 0;
+		this.lock = new Object();
+	}
+
+	/**
+	 * Returns the shard that holds the given word.
+	 *
+	 * @param word the word to find the shard of
+	 * @return the shard of the word
+	 */
+	private Shard getShard(String word) {
+		return shards[getShardIndex(word)];
+	}
+
+	/**
+	 * Returns the position of the shard that holds the given word.
+	 *
+	 * @param word the word to find the shard of
+	 * @return the position of the shard of the word
+	 */
+	private int getShardIndex(String word) {
+		return (word.hashCode() & 0x7FFFFFFF) % shards.length;
+	}
+
+	/**
+	 * Returns the sum of the generations of the shards. Each shard moves to a new
+	 * generation on its own when words are added to it, so writers of different shards
+	 * never contend on one counter, and the sum changes whenever any shard does.
+	 */
+	@Override
+	public long getGeneration() {
+		long generation = 0;
+
+		for (Shard shard : shards) {
+			generation += shard.index.getGeneration();
+		}
+		return generation;
+	}
+
+	/**
+	 * Returns the global ID of the location, assigning a new one if necessary.
+	 *
+	 * @param location the location to register
+	 * @return the global ID of the location
+	 */
+	private int register(String location) {
+		Integer id = ids.get(location);
+
+		if (id == null) {
+			synchronized (lock) {
+				id = ids.get(location);
+
+				if (id == null) {
+					id = size;
+					String[] current = locations;
+
+					if (id == current.length) {
+						current = Arrays.copyOf(current, id * 2);
+					}
+
+					if (id >>> BLOCK == counts.length) {
+						AtomicIntegerArray[] blocks = Arrays.copyOf(counts, counts.length + 1);
+						blocks[counts.length] = new AtomicIntegerArray(1 << BLOCK);
+						counts = blocks;
+					}
+
+					// Publishes the location before its ID, so readers of either one see both.
+					current[id] = location;
+					locations = current;
+					size = id + 1;
+					ids.put(location, id);
+				}
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Adds to the word count of the location with the given global ID.
+	 *
+	 * @param id the global ID of the location
+	 * @param amount the amount to add
+	 */
+	private void addCount(int id, int amount) {
+		counts[id >>> BLOCK].addAndGet(id & ((1 << BLOCK) - 1), amount);
+	}
+
+	/**
+	 * Maps the locations added to the sub-index of the shard since it was last called to
+	 * their global IDs. Must be called while holding the write lock of the shard, after
+	 * every location added has been registered.
+	 *
+	 * @param shard the shard to update
+	 */
+	private void mapLocations(Shard shard) {
+		int mapped = shard.index.countLocations();
+
+		if (mapped > shard.globals.length) {
+			shard.globals = Arrays.copyOf(shard.globals, Math.max(mapped, shard.globals.length * 2));
+		}
+
+		for (int local = shard.mapped; local < mapped; local++) {
+			shard.globals[local] = ids.get(shard.index.getLocation(local));
+		}
+		shard.mapped = mapped;
+	}
+
+	/**
+	 * Adds the words of the other index to the shards that hold them. The word counts of
+	 * the other index are added first, so searches never find postings of a location
+	 * without its word count. Then each shard with any of the words is locked on its own
+	 * and merges in the words that belong to it, which moves that shard to a new
+	 * generation once.
+	 */
+	@Override
+	public void addAll(InvertedIndex other) {
+		addAll(List.of(other));
+	}
+
+	@Override
+	public void addAll(Collection<? extends InvertedIndex> others) {
+		for (InvertedIndex other : others) {
+			int[] otherCounts = other.getCounts();
+
+			for (int id = 0; id < otherCounts.length; id++) {
+				addCount(register(other.getLocation(id)), otherCounts[id]);
+			}
+		}
+
+		// Finds the shards of the words first, so shards without any of them are never locked.
+		boolean[] touched = new boolean[shards.length];
+
+		for (InvertedIndex other : others) {
+			for (String word : other.getWords()) {
+				touched[getShardIndex(word)] = true;
+			}
+		}
+
+		for (int i = 0; i < shards.length; i++) {
+			if (!touched[i]) {
+				continue;
+			}
+
+			Shard shard = shards[i];
+			shard.lock.writeLock().lock();
+
+			try {
+				shard.index.addAll(others, word -> getShard(word) == shard);
+				mapLocations(shard);
+			}
+			finally {
+				shard.lock.writeLock().unlock();
+			}
+		}
+	}
+
+	@Override
+	public void add(String word, String path, Integer position) {
+		int id = register(path);
+		Shard shard = getShard(word);
+		shard.lock.writeLock().lock();
+
+		try {
+			if (!shard.index.contains(word, path, position)) {
+				// Adds the word count first, so the generation of the shard only moves once both changed.
+				addCount(id, 1);
+				shard.index.add(word, path, position);
+				mapLocations(shard);
+			}
+		}
+		finally {
+			shard.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void seal() {
+		for (Shard shard : shards) {
+			shard.lock.writeLock().lock();
+
+			try {
+				shard.index.seal();
+			}
+			finally {
+				shard.lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Combines every shard into a single new index, locking one shard at a time.
+	 *
+	 * @return the combined index
+	 */
+	private InvertedIndex merge() {
+		InvertedIndex merged = new InvertedIndex();
+
+		for (Shard shard : shards) {
+			shard.lock.readLock().lock();
+
+			try {
+				merged.addAll(shard.index);
+			}
+			finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		merged.seal();
+		return merged;
+	}
+
+	@Override
+	public FrozenIndex freeze() {
+		return merge().freeze();
+	}
+
+	@Override
+	public void writeIndex(Path path) throws IOException {
+		merge().writeIndex(path);
+	}
+
+	@Override
+	public void writeCounts(Path path) throws IOException {
+		TreeMap<String, Integer> countsMap = new TreeMap<>();
+
+		for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+			countsMap.put(entry.getKey(), getCount(entry.getValue()));
+		}
+		JsonWriter.asObject(countsMap, path);
+	}
+
+	@Override
+	public Set<String> getPaths() {
+		return Collections.unmodifiableSet(new TreeSet<>(ids.keySet()));
+	}
+
+	@Override
+	public Integer getCount(String path) {
+		Integer id = ids.get(path);
+		return id == null ? null : getCount(id);
+	}
+
+	@Override
+	public int getCount(int id) {
+		return counts[id >>> BLOCK].get(id & ((1 << BLOCK) - 1));
+	}
+
+	@Override
+	protected int[] getCounts() {
+		int[] wordCounts = new int[size];
+		AtomicIntegerArray[] blocks = counts;
+
+		for (int id = 0; id < wordCounts.length; id++) {
+			wordCounts[id] = blocks[id >>> BLOCK].get(id & ((1 << BLOCK) - 1));
+		}
+		return wordCounts;
+	}
+
+	@Override
+	protected int countLocations() {
+		return size;
+	}
+
+	@Override
+	protected String[] lookupLocations(int[] ids, int size) {
+		String[] current = locations;
+		String[] found = new String[size];
+
+		for (int i = 0; i < size; i++) {
+			found[i] = current[ids[i]];
+		}
+		return found;
+	}
+
+	@Override
+	public String getLocation(int id) {
+		return locations[id];
+	}
+
+	@Override
+	public Set<String> getWords() {
+		TreeSet<String> words = new TreeSet<>();
+
+		for (Shard shard : shards) {
+			shard.lock.readLock().lock();
+
+			try {
+				words.addAll(shard.index.getWords());
+			}
+			finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public int countWords(String prefix) {
+		int count = 0;
+
+		for (Shard shard : shards) {
+			shard.lock.readLock().lock();
+
+			try {
+				count += shard.index.countWords(prefix);
+			}
+			finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		return count;
+	}
+
+	@Override
+	protected List<String> listWords(String prefix) {
+		TreeSet<String> words = new TreeSet<>();
+
+		for (Shard shard : shards) {
+			shard.lock.readLock().lock();
+
+			try {
+				words.addAll(shard.index.listWords(prefix));
+			}
+			finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		return new ArrayList<>(words);
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		Shard shard = getShard(word);
+		shard.lock.readLock().lock();
+
+		try {
+			return shard.index.getLocations(word);
+		}
+		finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int[] getPositions(String word, String location) {
+		Shard shard = getShard(word);
+		shard.lock.readLock().lock();
+
+		try {
+			return shard.index.getPositions(word, location);
+		}
+		finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean containsCount(String path) {
+		return ids.containsKey(path);
+	}
+
+	@Override
+	public boolean contains(String word) {
+		Shard shard = getShard(word);
+		shard.lock.readLock().lock();
+
+		try {
+			return shard.index.contains(word);
+		}
+		finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		Shard shard = getShard(word);
+		shard.lock.readLock().lock();
+
+		try {
+			return shard.index.contains(word, location);
+		}
+		finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(String word, String location, Integer position) {
+		Shard shard = getShard(word);
+		shard.lock.readLock().lock();
+
+		try {
+			return shard.index.contains(word, location, position);
+		}
+		finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return merge().toString();
+	}
+
+	/**
+	 * Copies the postings of the word from its shard into a new posting list with global IDs.
+	 */
+	@Override
+	protected Postings getPostings(String word) {
+		Shard shard = getShard(word);
+		shard.lock.readLock().lock();
+
+		try {
+			Postings postings = shard.index.getPostings(word);
+
+			if (postings == null) {
+				return null;
+			}
+
+			PostingList combined = new PostingList();
+
+			for (int i = 0; i < postings.size(); i++) {
+				int id = shard.globals[postings.getDocument(i)];
+
+				for (int position : postings.getPositions(i)) {
+					combined.add(id, position);
+				}
+			}
+			return combined;
+		}
+		finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<SearchResult> search(Set<String> queries, boolean exactSearch, int k) {
+		int[][] accumulators = { new int[size] };
+
+		if (exactSearch) {
+			// Groups the queries by shard so only the shards of the queries are locked.
+			Map<Shard, Set<String>> groups = new HashMap<>();
+
+			for (String query : queries) {
+				groups.computeIfAbsent(getShard(query), shard -> new TreeSet<>()).add(query);
+			}
+
+			for (Map.Entry<Shard, Set<String>> group : groups.entrySet()) {
+				Set<String> words = group.getValue();
+				searchShard(accumulators, group.getKey(), index -> index.countMatches(words, true));
+			}
+		}
+		else {
+			// Words that start with a query may be in any shard.
+			for (Shard shard : shards) {
+				searchShard(accumulators, shard, index -> index.countMatches(queries, false));
+			}
+		}
+
+		// Captures the word counts once, after every shard has been searched.
+		return selectTop(collectResults(accumulators[0], getCounts()), k);
+	}
+
+	@Override
+	public List<SearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		int[][] accumulators = { new int[size] };
+
+		// Words within the edit distance of a query may be in any shard.
+		for (Shard shard : shards) {
+			searchShard(accumulators, shard, index -> index.countFuzzyMatches(queries, distance));
+		}
+
+		return selectTop(collectResults(accumulators[0], getCounts()), k);
+	}
+
+	/**
+	 * Searches one shard and adds the counts it finds to the counts of every shard.
+	 *
+	 * @param accumulators holds the counts of the search results indexed by global ID, which
+	 *   is replaced by a larger array if locations were added since the search started
+	 * @param shard the shard to search
+	 * @param search returns the counts of the sub-index of the shard, indexed by its own IDs
+	 */
+	private void searchShard(int[][] accumulators, Shard shard, Function<InvertedIndex, int[]> search) {
+		shard.lock.readLock().lock();
+
+		try {
+			int[] found = search.apply(shard.index);
+
+			for (int local = 0; local < found.length; local++) {
+				if (found[local] > 0) {
+					int id = shard.globals[local];
+
+					if (id >= accumulators[0].length) {
+						accumulators[0] = Arrays.copyOf(accumulators[0], size);
+					}
+					accumulators[0][id] += found[local];
+				}
+			}
+		}
+		finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Nested data structure class that pairs the sub-index of a shard with its lock.
+	 */
+	private static class Shard {
+
+		/** The sub-index holding the words of the shard. */
+		private final InvertedIndex index;
+
+		/** The lock used to protect concurrent access to the sub-index. */
+		private final SimpleReadWriteLock lock;
+
+		/** Maps each location ID of the sub-index to its global ID. */
+		private int[] globals;
+
+		/** The number of location IDs of the sub-index mapped to global IDs. */
+		private int mapped;
+
+		/**
+		 * Initializes an empty shard.
+		 */
+		public Shard() {
+			this.index = new InvertedIndex();
+			this.lock = new SimpleReadWriteLock();
+			this.globals = new int[16];
+			this.mapped = 0;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * A stemmer that remembers the stems of recently seen words. Words in natural text are
+ * very unevenly spread, so a small cache of the most common ones avoids stemming the
+ * same words over and over. The cache has a fixed number of slots, two for every hash
+ * value, and a word that misses replaces the least recently used word of its two slots.
+ * Looking up a word compares its characters directly, so a hit creates no strings.
+ *
+ * A cache is not thread-safe. Use {@link #get()} to get the cache of the current thread,
+ * which also reuses one stemmer per thread instead of creating one for every file, web
+ * page, or query.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ *
+ * @see TextStemmer
+ */
+public class StemCache implements Stemmer {
+
+	/** The default number of words remembered. */
+	public static final int CAPACITY = 1 << 14;
+
+	/** The cache of each thread, using the default stemmer algorithm. */
+	private static final ThreadLocal<StemCache> CACHES = ThreadLocal.withInitial(
+			() -> new StemCache(new SnowballStemmer(TextStemmer.DEFAULT), CAPACITY));
+
+	/** The stemmer used for words that are not in the cache. */
+	private final Stemmer stemmer;
+
+	/** The word in each slot, or null if the slot is empty. */
+	private final String[] words;
+
+	/** The stem of the word in each slot. */
+	private final String[] stems;
+
+	/** The mask that turns a hash value into the first of its two slots. */
+	private final int mask;
+
+	/** The number of words found in the cache. */
+	private long hits;
+
+	/** The number of words that had to be stemmed. */
+	private long misses;
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param stemmer the stemmer used for words that are not in the cache
+	 * @param capacity the number of words remembered, rounded up to a power of two
+	 */
+	public StemCache(Stemmer stemmer, int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+
+		this.stemmer = stemmer;
+		this.words = new String[size];
+		this.stems = new String[size];
+		this.mask = size - 2;
+		this.hits = 0;
+		this.misses = 0;
+	}
+
+	/**
+	 * Returns the cache of the current thread.
+	 *
+	 * @return the cache of the current thread
+	 */
+	public static StemCache get() {
+		return CACHES.get();
+	}
+
+	/**
+	 * Returns the stem of the word, stemming it only if it is not in the cache.
+	 *
+	 * @param word the word to stem
+	 * @return the stem of the word, which is always a {@link String}
+	 */
+	@Override
+	public String stem(CharSequence word) {
+		int hash = 0;
+
+		for (int i = 0; i < word.length(); i++) {
+			hash = 31 * hash + word.charAt(i);
+		}
+
+		int slot = (hash ^ (hash >>> 16)) & mask;
+
+		if (words[slot] != null && words[slot].contentEquals(word)) {
+			hits++;
+			return stems[slot];
+		}
+
+		if (words[slot + 1] != null && words[slot + 1].contentEquals(word)) {
+			// Moves the word into the first slot, which holds the most recently used word.
+			String found = words[slot + 1];
+			String stem = stems[slot + 1];
+
+			words[slot + 1] = words[slot];
+			stems[slot + 1] = stems[slot];
+			words[slot] = found;
+			stems[slot] = stem;
+
+			hits++;
+			return stem;
+		}
+
+		String key = word.toString();
+		String stem = stemmer.stem(key).toString();
+
+		words[slot + 1] = words[slot];
+		stems[slot + 1] = stems[slot];
+		words[slot] = key;
+		stems[slot] = stem;
+
+		misses++;
+		return stem;
+	}
+
+	/**
+	 * Returns the number of words found in the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of words that were not in the cache and had to be stemmed.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the fraction of words found in the cache.
+	 *
+	 * @return the hit rate, from 0 to 1
+	 */
+	public double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0 : hits / (double) total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d hits, %d misses (%.1f%%)", hits, misses, getHitRate() * 100);
+	}
+}
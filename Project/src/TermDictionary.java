@@ -0,0 +1,327 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable, compact term dictionary that maps a sorted set of terms to their
+ * ordinals (their positions in sorted order) using a path-compressed trie stored in
+ * flat primitive arrays.
+ *
+ * Because the terms are sorted, every subtree of the trie holds a contiguous range of
+ * ordinals. Prefix queries therefore walk down to a single node and return its range,
+ * which also tells how many terms match before any of them are visited.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class TermDictionary {
+
+	/** The range returned when no terms match a prefix. */
+	private static final int[] EMPTY = new int[] { 0, 0 };
+
+	/** The number of terms in the dictionary. */
+	private final int size;
+
+	/** Stores the first ordinal in the subtree of each node. */
+	private final int[] lows;
+
+	/** Stores one past the last ordinal in the subtree of each node. */
+	private final int[] highs;
+
+	/** Stores where the children of each node start; children of node n end where those of node n + 1 start. */
+	private final int[] children;
+
+	/** Stores where the edge label leading into each node starts; labels end where the next starts. */
+	private final int[] labelStarts;
+
+	/** Stores the edge labels of every node. */
+	private final char[] labels;
+
+	/**
+	 * Builds the dictionary from the given terms.
+	 *
+	 * @param terms the terms in sorted order with no duplicates
+	 */
+	public TermDictionary(String[] terms) {
+		size = terms.length;
+
+		int capacity = 2 * terms.length + 2;
+		int[] lows = new int[capacity];
+		int[] highs = new int[capacity];
+		int[] depths = new int[capacity];
+		int[] children = new int[capacity + 1];
+		int[] labelStarts = new int[capacity + 1];
+		StringBuilder labels = new StringBuilder();
+
+		highs[0] = terms.length;
+		int nodes = 1;
+
+		// Creates nodes in breadth-first order so the children of each node are contiguous.
+		for (int node = 0; node < nodes; node++) {
+			int low = lows[node];
+			int high = highs[node];
+			int depth = depths[node];
+			children[node] = nodes;
+
+			// Skips the term that ends at this node, if any.
+			if (low < high && terms[low].length() == depth) {
+				low++;
+			}
+
+			while (low < high) {
+				char next = terms[low].charAt(depth);
+				int end = low + 1;
+
+				while (end < high && terms[end].charAt(depth) == next) {
+					end++;
+				}
+
+				// Compresses the edge to the longest prefix shared by the whole group.
+				String first = terms[low];
+				String last = terms[end - 1];
+				int shared = depth + 1;
+				int max = Math.min(first.length(), last.length());
+
+				while (shared < max && first.charAt(shared) == last.charAt(shared)) {
+					shared++;
+				}
+
+				lows[nodes] = low;
+				highs[nodes] = end;
+				depths[nodes] = shared;
+				labels.append(first, depth, shared);
+				labelStarts[nodes + 1] = labels.length();
+				nodes++;
+
+				low = end;
+			}
+		}
+		children[nodes] = nodes;
+
+		this.lows = Arrays.copyOf(lows, nodes);
+		this.highs = Arrays.copyOf(highs, nodes);
+		this.children = Arrays.copyOf(children, nodes + 1);
+		this.labelStarts = Arrays.copyOf(labelStarts, nodes + 1);
+		this.labels = labels.toString().toCharArray();
+	}
+
+	/**
+	 * Returns the number of terms in the dictionary.
+	 *
+	 * @return number of terms
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if a term ends at the given node.
+	 *
+	 * @param node the node to check
+	 * @return true if the node is terminal
+	 */
+	private boolean isTerminal(int node) {
+		return lows[node] < highs[node] && (children[node] == children[node + 1] || lows[children[node]] != lows[node]);
+	}
+
+	/**
+	 * Returns the child of the node whose edge label starts with the given character.
+	 *
+	 * @param node the parent node
+	 * @param next the first character of the edge label
+	 * @return the child node, or -1 if there is no such child
+	 */
+	private int findChild(int node, char next) {
+		int low = children[node];
+		int high = children[node + 1] - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			char label = labels[labelStarts[middle]];
+
+			if (label < next) {
+				low = middle + 1;
+			}
+			else if (label > next) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Walks down the trie along the given text.
+	 *
+	 * @param text the text to follow
+	 * @param partial whether the text may end partway through an edge label
+	 * @return the node reached, or -1 if the text leaves the trie
+	 */
+	private int walk(String text, boolean partial) {
+		int node = 0;
+		int i = 0;
+
+		while (i < text.length()) {
+			int child = findChild(node, text.charAt(i));
+
+			if (child < 0) {
+				return -1;
+			}
+
+			for (int k = labelStarts[child]; k < labelStarts[child + 1]; k++, i++) {
+				if (i == text.length()) {
+					return partial ? child : -1;
+				}
+				if (labels[k] != text.charAt(i)) {
+					return -1;
+				}
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the ordinal of the given term.
+	 *
+	 * @param term the term to find
+	 * @return the ordinal of the term, or -1 if the term is not in the dictionary
+	 */
+	public int find(String term) {
+		int node = walk(term, false);
+		return (node >= 0 && isTerminal(node)) ? lows[node] : -1;
+	}
+
+	/**
+	 * Returns the range of ordinals of the terms that start with the given prefix.
+	 *
+	 * @param prefix the prefix to match
+	 * @return a two element array of the first ordinal and one past the last ordinal
+	 */
+	public int[] getRange(String prefix) {
+		int node = walk(prefix, true);
+		return node < 0 ? EMPTY : new int[] { lows[node], highs[node] };
+	}
+
+	/**
+	 * Returns the number of terms that start with the given prefix.
+	 *
+	 * @param prefix the prefix to match
+	 * @return number of matching terms
+	 */
+	public int count(String prefix) {
+		int node = walk(prefix, true);
+		return node < 0 ? 0 : highs[node] - lows[node];
+	}
+
+	/**
+	 * Returns the ordinals of the terms accepted by the automaton. Walks the trie depth
+	 * first, reading the edge labels into the automaton, and stops going down as soon as
+	 * no term below a node can be accepted, so only the nodes near the query are visited.
+	 *
+	 * @param automaton the automaton of the words to find
+	 * @return the ordinals of the accepted terms, in ascending order
+	 */
+	public int[] fuzzy(LevenshteinAutomaton automaton) {
+		int[][] states = new int[automaton.getMaxLength() + 1][];
+
+		for (int i = 0; i < states.length; i++) {
+			states[i] = automaton.newState();
+		}
+		automaton.start(states[0]);
+
+		int[][] found = { new int[8] };
+		int count = fuzzy(automaton, 0, 0, states, found, 0);
+		return Arrays.copyOf(found[0], count);
+	}
+
+	/**
+	 * Adds the ordinals of the terms below the node accepted by the automaton, in order.
+	 *
+	 * @param automaton the automaton of the words to find
+	 * @param node the node reached
+	 * @param depth the number of characters read to reach the node
+	 * @param states the state of the automaton after each number of characters read
+	 * @param found holds the ordinals of the accepted terms so far, which is replaced by a
+	 *   larger array when full
+	 * @param count the number of accepted terms so far
+	 * @return the number of accepted terms, including those below the node
+	 */
+	private int fuzzy(LevenshteinAutomaton automaton, int node, int depth, int[][] states, int[][] found, int count) {
+		if (isTerminal(node) && automaton.isMatch(states[depth])) {
+			if (count == found[0].length) {
+				found[0] = Arrays.copyOf(found[0], count * 2);
+			}
+			found[0][count++] = lows[node];
+		}
+
+		for (int child = children[node]; child < children[node + 1]; child++) {
+			int reached = depth;
+			boolean alive = true;
+
+			for (int k = labelStarts[child]; alive && k < labelStarts[child + 1]; k++) {
+				alive = reached + 1 < states.length && automaton.step(states[reached], labels[k], states[reached + 1]);
+				reached++;
+			}
+
+			if (alive) {
+				count = fuzzy(automaton, child, reached, states, found, count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the term with the given ordinal, rebuilt from the edge labels.
+	 *
+	 * @param ordinal the ordinal of the term
+	 * @return the term
+	 */
+	public String get(int ordinal) {
+		if (ordinal < 0 || ordinal >= size) {
+			throw new IndexOutOfBoundsException("Ordinal: " + ordinal);
+		}
+
+		StringBuilder term = new StringBuilder();
+		int node = 0;
+
+		while (!(lows[node] == ordinal && isTerminal(node))) {
+			// Finds the last child whose range starts at or before the ordinal.
+			int low = children[node];
+			int high = children[node + 1] - 1;
+
+			while (low < high) {
+				int middle = (low + high + 1) >>> 1;
+
+				if (lows[middle] <= ordinal) {
+					low = middle;
+				}
+				else {
+					high = middle - 1;
+				}
+			}
+
+			node = low;
+			term.append(labels, labelStarts[node], labelStarts[node + 1] - labelStarts[node]);
+		}
+		return term.toString();
+	}
+
+	/**
+	 * Returns an unmodifiable list of every term in sorted order.
+	 *
+	 * @return unmodifiable list of Strings
+	 */
+	public List<String> getTerms() {
+		List<String> terms = new ArrayList<>(size);
+
+		for (int ordinal = 0; ordinal < size; ordinal++) {
+			terms.add(get(ordinal));
+		}
+		return Collections.unmodifiableList(terms);
+	}
+}
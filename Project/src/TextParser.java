@@ -48,16 +48,24 @@ public class TextParser {
 	}
 
 	/**
-	 * Cleans the text and then splits it by whitespace.
+	 * Cleans the text and then splits it by whitespace, giving the same words as
+	 * splitting the result of {@link #clean(String)} with {@link #split(String)}.
 	 *
 	 * @param text the text to clean and split
 	 * @return an array of {@link String} objects
 	 *
 	 * @see #clean(String)
-	 * @see #parse(String)
+	 * @see #split(String)
+	 * @see TextTokenizer
 	 */
 	public static String[] parse(String text) {
-		return split(clean(text));
+		List<String> words = new ArrayList<>();
+		TextTokenizer tokenizer = new TextTokenizer().reset(text);
+
+		while (tokenizer.next()) {
+			words.add(tokenizer.toString());
+		}
+		return words.toArray(new String[0]);
 	}
 	
 	/**
@@ -70,6 +78,7 @@ public class TextParser {
 	public static List<String> parseFile(Path inputFile) throws IOException {
 		
 		List<String> parsedWords = new ArrayList<>();
+		TextTokenizer tokenizer = new TextTokenizer();
 		
 		try (
 				BufferedReader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8);
@@ -78,10 +87,10 @@ public class TextParser {
 			String line = null;
 			
 			while ((line = reader.readLine()) != null){
-				String[] parsedLine = parse(line);
-				
-				for (String item : parsedLine){
-					parsedWords.add(item);
+				tokenizer.reset(line);
+
+				while (tokenizer.next()) {
+					parsedWords.add(tokenizer.toString());
 				}
 			}
 		}
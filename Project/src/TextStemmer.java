@@ -32,12 +32,12 @@ public class TextStemmer {
 	 * @param line    the line of words to clean, split, and stem
 	 * @return a list of cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer
+	 * @see StemCache#get()
 	 * @see #DEFAULT
 	 * @see #listStems(String, Stemmer)
 	 */
 	public static List<String> listStems(String line) {
-		return listStems(line, new SnowballStemmer(DEFAULT));
+		return listStems(line, StemCache.get());
 	}
 
 	/**
@@ -51,11 +51,11 @@ public class TextStemmer {
 	 * @see TextParser#parse(String)
 	 */
 	public static List<String> listStems(String line, Stemmer stemmer) {
-		String[] parsedText = TextParser.parse(line);
+		TextTokenizer tokenizer = new TextTokenizer().reset(line);
 		List<String> stemmedList = new ArrayList<>();
 
-		for (String word : parsedText) {
-			String stemmedWord = stemmer.stem(word).toString();
+		while (tokenizer.next()) {
+			String stemmedWord = stemmer.stem(tokenizer.token()).toString();
 			stemmedList.add(stemmedWord);
 		}
 
@@ -76,7 +76,7 @@ public class TextStemmer {
 	public static List<String> listStems(Path inputFile) throws IOException {
 
 		List<String> stemmedLines = new ArrayList<>();
-		Stemmer stemmer = new SnowballStemmer(DEFAULT);
+		Stemmer stemmer = StemCache.get();
 
 		try (
 				BufferedReader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8);
@@ -103,12 +103,12 @@ public class TextStemmer {
 	 * @param line    the line of words to clean, split, and stem
 	 * @return a sorted set of unique cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer
+	 * @see StemCache#get()
 	 * @see #DEFAULT
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(String line) {
-		return uniqueStems(line, new SnowballStemmer(DEFAULT));
+		return uniqueStems(line, StemCache.get());
 	}
 
 	/**
@@ -124,11 +124,11 @@ public class TextStemmer {
 	 */
 	public static TreeSet<String> uniqueStems(String line, Stemmer stemmer) {
 
-		String[] parsedText = TextParser.parse(line);
+		TextTokenizer tokenizer = new TextTokenizer().reset(line);
 		TreeSet<String> stemmedSet = new TreeSet<>();
 
-		for (String word : parsedText) {
-			String stemmedWord = (String)stemmer.stem(word);
+		while (tokenizer.next()) {
+			String stemmedWord = (String)stemmer.stem(tokenizer.token());
 			stemmedSet.add(stemmedWord);
 		}
 
@@ -0,0 +1,237 @@
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into the same cleaned, lowercase words as {@link TextParser#parse(String)}
+ * in a single pass over its characters, without regular expressions. Each word is
+ * written into a buffer that is reused for the next word, so no strings are created
+ * unless the caller asks for them.
+ *
+ * ASCII text is cleaned character by character. Once a character outside of ASCII is
+ * seen, the run of text between the surrounding ASCII whitespace is cleaned with
+ * {@link TextParser#clean(String)} instead, which folds diacritics and lowercases
+ * exactly as before. ASCII whitespace always ends a word and never changes how the text
+ * around it is normalized, so cleaning each run separately gives the same words as
+ * cleaning the whole text at once. The only exceptions are the letters that lowercase
+ * differently depending on the text around them, which are the capital sigma and, in
+ * some languages, the letters I and J, so text with those is cleaned all at once.
+ *
+ * A tokenizer is not thread-safe, but may be reused for any number of texts.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ *
+ * @see TextParser
+ */
+public class TextTokenizer {
+
+	/** The languages that lowercase letters depending on the text around them. */
+	private static final Set<String> LOCALES = Set.of("tr", "az", "lt");
+
+	/** The reusable buffer holding the current word. */
+	private final StringBuilder token;
+
+	/** The text being split. */
+	private String text;
+
+	/** The index of the next character of the text to read. */
+	private int index;
+
+	/** The index where the current run of text between ASCII whitespace starts. */
+	private int runStart;
+
+	/** The cleaned run of text being read, or null if reading the text directly. */
+	private String cleaned;
+
+	/** The index of the next character of the cleaned run to read. */
+	private int cleanedIndex;
+
+	/** Whether any character other than whitespace has been kept. */
+	private boolean started;
+
+	/** Whether an empty word must be returned before the first word. */
+	private boolean leading;
+
+	/** Whether the current word was held back to return an empty word first. */
+	private boolean held;
+
+	/**
+	 * Initializes a tokenizer with no text.
+	 */
+	public TextTokenizer() {
+		this.token = new StringBuilder();
+		reset("");
+	}
+
+	/**
+	 * Starts splitting the given text, using the default locale at this time.
+	 *
+	 * @param text the text to split
+	 * @return this tokenizer
+	 */
+	public TextTokenizer reset(String text) {
+		this.text = text;
+		this.index = 0;
+		this.runStart = 0;
+		this.cleaned = null;
+		this.cleanedIndex = 0;
+		this.started = false;
+		this.leading = false;
+		this.held = false;
+		token.setLength(0);
+
+		// Whether a capital sigma is lowercased as a final sigma depends on the words around it.
+		if (text.indexOf('\u03a3') >= 0 || LOCALES.contains(Locale.getDefault().getLanguage())) {
+			this.cleaned = TextParser.clean(text);
+			this.index = text.length();
+		}
+		return this;
+	}
+
+	/**
+	 * Moves to the next word of the text.
+	 *
+	 * @return true if there is another word, false if the end of the text was reached
+	 */
+	public boolean next() {
+		if (held) {
+			held = false;
+			return true;
+		}
+
+		token.setLength(0);
+
+		while (true) {
+			if (cleaned != null) {
+				while (cleanedIndex < cleaned.length()) {
+					char current = cleaned.charAt(cleanedIndex++);
+
+					if (isSpace(current)) {
+						if (!started && !Character.isWhitespace(current)) {
+							// Text that starts with a space String#strip() keeps splits into an empty word first.
+							started = true;
+							leading = true;
+						}
+
+						if (token.length() > 0) {
+							return found();
+						}
+					}
+					else {
+						started = true;
+						token.append(current);
+					}
+				}
+
+				cleaned = null;
+
+				if (token.length() > 0) {
+					return found();
+				}
+				continue;
+			}
+
+			if (index >= text.length()) {
+				return token.length() > 0 && found();
+			}
+
+			char current = text.charAt(index);
+
+			if (current >= 0x80) {
+				// Cleans the whole run of text around the character, including any letters read already.
+				int end = index;
+
+				while (end < text.length() && !isAsciiSpace(text.charAt(end))) {
+					end++;
+				}
+
+				token.setLength(0);
+				cleaned = TextParser.clean(text.substring(runStart, end));
+				cleanedIndex = 0;
+				index = end;
+			}
+			else if (current >= 'A' && current <= 'Z') {
+				started = true;
+				token.append((char) (current + ('a' - 'A')));
+				index++;
+			}
+			else if (current >= 'a' && current <= 'z') {
+				started = true;
+				token.append(current);
+				index++;
+			}
+			else if (isAsciiSpace(current)) {
+				index++;
+				runStart = index;
+
+				if (token.length() > 0) {
+					return found();
+				}
+			}
+			else {
+				// Removes digits, punctuation, symbols, and control characters.
+				index++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the current word, which is only valid until {@link #next()} is called again.
+	 *
+	 * @return the current word
+	 */
+	public CharSequence token() {
+		return held ? "" : token;
+	}
+
+	/**
+	 * Returns the current word as a new string.
+	 *
+	 * @return the current word
+	 */
+	@Override
+	public String toString() {
+		return token().toString();
+	}
+
+	/**
+	 * Finishes finding a word, holding it back if an empty word must be returned first.
+	 *
+	 * @return true
+	 */
+	private boolean found() {
+		if (leading) {
+			leading = false;
+			held = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the character is ASCII whitespace that splits words.
+	 *
+	 * @param current the character to check
+	 * @return true if the character is a tab, line break, vertical tab, form feed, carriage return, or space
+	 */
+	private static boolean isAsciiSpace(char current) {
+		return current == ' ' || (current >= '\t' && current <= '\r');
+	}
+
+	/**
+	 * Returns whether the character is whitespace that splits words, the same as
+	 * {@link TextParser#SPLIT_REGEX}.
+	 *
+	 * @param current the character to check
+	 * @return true if the character is Unicode whitespace
+	 */
+	private static boolean isSpace(char current) {
+		if (current < 0x80) {
+			return isAsciiSpace(current);
+		}
+
+		int type = Character.getType(current);
+		return current == 0x85 || type == Character.SPACE_SEPARATOR || type == Character.LINE_SEPARATOR
+				|| type == Character.PARAGRAPH_SEPARATOR;
+	}
+}
@@ -1,11 +1,26 @@
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * A thread-safe version of {@link InvertedIndex} using a read/write lock.
  *
+ * In versioned mode, readers never lock. Every version of the index is an immutable,
+ * sealed {@link InvertedIndex} published through a volatile reference, and each call
+ * loads the current version once, so every search sees one consistent snapshot. Writers
+ * still take the write lock, to build the next version one at a time with
+ * {@link InvertedIndex#copyWith(Collection, Predicate)}, which copies only the posting
+ * lists the write adds to. Each batch added with {@link #addAll(Collection)} is published
+ * as soon as it is merged. Words added one at a time are buffered and published together
+ * every {@link #BATCH} words, or when {@link #publish()} or {@link #seal()} is called.
+ *
+ * Each public method takes the read lock at most once. The protected helpers the search
+ * methods call back into do not lock, and methods that read through a frozen copy only
+ * lock to freeze it.
+ *
  * @author CS 212 Software Development
  * @author University of San Francisco
  * @version Fall 2019
@@ -15,12 +30,36 @@ public class ThreadSafeIndex  extends InvertedIndex {
 	/** The lock used to protect concurrent access to the underlying set. */
 	private final SimpleReadWriteLock lock;
 
+	/** The latest published version read by readers, or null if not versioned. */
+	private volatile InvertedIndex published;
+
+	/** The words added one at a time since the latest version was published. */
+	private InvertedIndex pending;
+
+	/** The number of words added to the pending index. */
+	private int buffered;
+
+	/** The number of words added one at a time that are published together. */
+	public static final int BATCH = 1 << 14;
+
 	/**
 	 * Initializes a thread-safe InvertedIndex.
 	 */
 	public ThreadSafeIndex() {
+		this(false);
+	}
+
+	/**
+	 * Initializes a thread-safe InvertedIndex, optionally in versioned mode.
+	 *
+	 * @param versioned whether readers should read published versions instead of locking
+	 */
+	public ThreadSafeIndex(boolean versioned) {
 		super();
 		lock = new SimpleReadWriteLock();
+		published = versioned ? new InvertedIndex() : null;
+		pending = versioned ? new InvertedIndex() : null;
+		buffered = 0;
 	}
 
 	@Override
@@ -28,7 +67,46 @@ public class ThreadSafeIndex  extends InvertedIndex {
 		lock.writeLock().lock();
 
 		try {
-			super.addAll(other);
+			if (published != null) {
+				publish(List.of(other), null);
+			}
+			else {
+				super.addAll(other);
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void addAll(Collection<? extends InvertedIndex> others) {
+		lock.writeLock().lock();
+
+		try {
+			if (published != null) {
+				publish(others, null);
+			}
+			else {
+				super.addAll(others);
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	protected void addAll(Collection<? extends InvertedIndex> others, Predicate<String> words) {
+		lock.writeLock().lock();
+
+		try {
+			if (published != null) {
+				publish(others, words);
+			}
+			else {
+				super.addAll(others, words);
+			}
 		}
 		finally {
 			lock.writeLock().unlock();
@@ -40,27 +118,177 @@ public class ThreadSafeIndex  extends InvertedIndex {
 		lock.writeLock().lock();
 
 		try {
-			super.add(word, path, position);
+			if (published != null) {
+				pending.add(word, path, position);
+
+				if (++buffered >= BATCH) {
+					publishPending();
+				}
+			}
+			else {
+				super.add(word, path, position);
+			}
 		}
 		finally {
 			lock.writeLock().unlock();
 		}
 	}
 
+	/**
+	 * Seals the index. In versioned mode, every published version is already sealed, so
+	 * this publishes any words added one at a time instead.
+	 */
 	@Override
-	public void writeIndex(Path path) throws IOException {
+	public void seal() {
+		lock.writeLock().lock();
+
+		try {
+			if (published != null) {
+				publishPending();
+			}
+			else {
+				super.seal();
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Throws an {@link UnsupportedOperationException} in versioned mode, where every
+	 * published version is immutable.
+	 */
+	@Override
+	protected void offsetPositions(int amount) {
+		lock.writeLock().lock();
+
+		try {
+			if (published != null) {
+				throw new UnsupportedOperationException("A versioned index cannot offset its positions.");
+			}
+			super.offsetPositions(amount);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Publishes the words added one at a time since the latest version as a new version.
+	 * Does nothing if not in versioned mode.
+	 */
+	public void publish() {
+		lock.writeLock().lock();
+
+		try {
+			if (published != null) {
+				publishPending();
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Publishes the words added one at a time, if any, as a new version. Must be called
+	 * in versioned mode while holding the write lock.
+	 */
+	private void publishPending() {
+		if (buffered > 0) {
+			published = published.copyWith(List.of(pending), null);
+			pending = new InvertedIndex();
+			buffered = 0;
+			nextGeneration();
+		}
+	}
+
+	/**
+	 * Publishes a new version with the given words of the other indexes added, after any
+	 * words added one at a time. The generation moves on only after the new version is
+	 * published, so results cached for a generation never come from an older version.
+	 * Must be called in versioned mode while holding the write lock.
+	 *
+	 * @param others the other InvertedIndexes to add
+	 * @param words tests whether each word should be added, or null to add every word
+	 */
+	private void publish(Collection<? extends InvertedIndex> others, Predicate<String> words) {
+		publishPending();
+		published = published.copyWith(others, words);
+		nextGeneration();
+	}
+
+	@Override
+	public FrozenIndex freeze() {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.freeze();
+		}
+
 		lock.readLock().lock();
 
 		try {
-			super.writeIndex(path);
+			return super.freeze();
 		}
 		finally {
 			lock.readLock().unlock();
 		}
 	}
 
+	/**
+	 * Writes a frozen copy of the index, so the read lock is taken once to freeze it
+	 * rather than again for every word and location written.
+	 */
+	@Override
+	public void writeIndex(Path path) throws IOException {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			current.writeIndex(path);
+			return;
+		}
+		freeze().writeIndex(path);
+	}
+
+	/**
+	 * Writes a frozen copy of the index, which is frozen under the read lock.
+	 */
+	@Override
+	public void writeSegment(Path path) throws IOException {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			current.writeSegment(path);
+			return;
+		}
+		freeze().writeSegment(path);
+	}
+
+	/**
+	 * Writes a frozen copy of the index, which is frozen under the read lock.
+	 */
+	@Override
+	public void writeSnapshot(Path path) throws IOException {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			current.writeSnapshot(path);
+			return;
+		}
+		freeze().writeSnapshot(path);
+	}
+
 	@Override
 	public void writeCounts(Path path) throws IOException {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			current.writeCounts(path);
+			return;
+		}
+
 		lock.readLock().lock();
 
 		try {
@@ -73,6 +301,12 @@ public class ThreadSafeIndex  extends InvertedIndex {
 
 	@Override
 	public Set<String> getPaths() {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.getPaths();
+		}
+
 		lock.readLock().lock();
 
 		try {
@@ -85,6 +319,12 @@ public class ThreadSafeIndex  extends InvertedIndex {
 
 	@Override
 	public Integer getCount(String path) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.getCount(path);
+		}
+
 		lock.readLock().lock();
 
 		try {
@@ -95,8 +335,70 @@ public class ThreadSafeIndex  extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public int getCount(int id) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.getCount(id);
+		}
+
+		lock.readLock().lock();
+
+		try {
+			return super.getCount(id);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Does not lock, since it is only called by the search methods, which already hold
+	 * the read lock.
+	 */
+	@Override
+	protected int[] getCounts() {
+		InvertedIndex current = published;
+		return current != null ? current.getCounts() : super.getCounts();
+	}
+
+	/**
+	 * Does not lock, since it is only called by the search methods, which already hold
+	 * the read lock.
+	 */
+	@Override
+	protected String[] lookupLocations(int[] ids, int size) {
+		InvertedIndex current = published;
+		return current != null ? current.lookupLocations(ids, size) : super.lookupLocations(ids, size);
+	}
+
+	@Override
+	public String getLocation(int id) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.getLocation(id);
+		}
+
+		lock.readLock().lock();
+
+		try {
+			return super.getLocation(id);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public Set<String> getWords() {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.getWords();
+		}
+
 		lock.readLock().lock();
 
 		try {
@@ -107,8 +409,50 @@ public class ThreadSafeIndex  extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public int countWords(String prefix) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.countWords(prefix);
+		}
+
+		lock.readLock().lock();
+
+		try {
+			return super.countWords(prefix);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	protected List<String> listWords(String prefix) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.listWords(prefix);
+		}
+
+		lock.readLock().lock();
+
+		try {
+			return super.listWords(prefix);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public Set<String> getLocations(String word) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.getLocations(word);
+		}
+
 		lock.readLock().lock();
 
 		try {
@@ -120,7 +464,13 @@ public class ThreadSafeIndex  extends InvertedIndex {
 	}
 
 	@Override
-	public Set<Integer> getPositions(String word, String location) {
+	public int[] getPositions(String word, String location) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.getPositions(word, location);
+		}
+
 		lock.readLock().lock();
 
 		try {
@@ -133,6 +483,12 @@ public class ThreadSafeIndex  extends InvertedIndex {
 
 	@Override
 	public boolean containsCount(String path) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.containsCount(path);
+		}
+
 		lock.readLock().lock();
 
 		try {
@@ -145,6 +501,12 @@ public class ThreadSafeIndex  extends InvertedIndex {
 
 	@Override
 	public boolean contains(String word) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.contains(word);
+		}
+
 		lock.readLock().lock();
 
 		try {
@@ -157,6 +519,12 @@ public class ThreadSafeIndex  extends InvertedIndex {
 
 	@Override
 	public boolean contains(String word, String location) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.contains(word, location);
+		}
+
 		lock.readLock().lock();
 
 		try {
@@ -169,6 +537,12 @@ public class ThreadSafeIndex  extends InvertedIndex {
 
 	@Override
 	public boolean contains(String word, String location, Integer position) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.contains(word, location, position);
+		}
+
 		lock.readLock().lock();
 
 		try {
@@ -181,6 +555,12 @@ public class ThreadSafeIndex  extends InvertedIndex {
 
 	@Override
 	public String toString() {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.toString();
+		}
+
 		lock.readLock().lock();
 
 		try {
@@ -192,11 +572,123 @@ public class ThreadSafeIndex  extends InvertedIndex {
 	}
 
 	@Override
-	public List<SearchResult> search(Set<String> queries, boolean exactSearch) {
+	public List<SearchResult> search(Set<String> queries, boolean exactSearch, int k) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.search(queries, exactSearch, k);
+		}
+
+		lock.readLock().lock();
+
+		try {
+			return super.search(queries, exactSearch, k);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<SearchResult> phraseSearch(List<String> phrase, int k) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.phraseSearch(phrase, k);
+		}
+
+		lock.readLock().lock();
+
+		try {
+			return super.phraseSearch(phrase, k);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<SearchResult> proximitySearch(String first, String second, int distance, int k) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.proximitySearch(first, second, distance, k);
+		}
+
+		lock.readLock().lock();
+
+		try {
+			return super.proximitySearch(first, second, distance, k);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<SearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.fuzzySearch(queries, distance, k);
+		}
+
+		lock.readLock().lock();
+
+		try {
+			return super.fuzzySearch(queries, distance, k);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Does not lock, since BM25 ranking searches a frozen copy of the index, which is
+	 * frozen under the read lock.
+	 */
+	@Override
+	public List<SearchResult> bm25Search(Set<String> queries, boolean exactSearch, int k) {
+		InvertedIndex current = published;
+		return current != null ? current.bm25Search(queries, exactSearch, k) : super.bm25Search(queries, exactSearch, k);
+	}
+
+	@Override
+	protected int countLocations() {
+		InvertedIndex current = published;
+		return current != null ? current.countLocations() : super.countLocations();
+	}
+
+	@Override
+	protected int[] countMatches(Set<String> queries, boolean exactSearch) {
+		InvertedIndex current = published;
+		return current != null ? current.countMatches(queries, exactSearch) : super.countMatches(queries, exactSearch);
+	}
+
+	@Override
+	protected int[] countFuzzyMatches(Set<String> queries, int distance) {
+		InvertedIndex current = published;
+		return current != null ? current.countFuzzyMatches(queries, distance) : super.countFuzzyMatches(queries, distance);
+	}
+
+	@Override
+	protected Postings getPostings(String word) {
+		InvertedIndex current = published;
+		return current != null ? current.getPostings(word) : super.getPostings(word);
+	}
+
+	@Override
+	public List<SearchResult> booleanSearch(BooleanQuery query, int k) {
+		InvertedIndex current = published;
+
+		if (current != null) {
+			return current.booleanSearch(query, k);
+		}
+
 		lock.readLock().lock();
 
 		try {
-			return super.search(queries, exactSearch);
+			return super.booleanSearch(query, k);
 		}
 		finally {
 			lock.readLock().unlock();
@@ -56,10 +56,12 @@ public class WebCrawler {
 		Task task = new Task(url);
 		queue.execute(task);
 		queue.finish();
+		index.seal();
 	}
 
 	/**
-	 * Adds the HTML content of a URL to the InvertedIndex.
+	 * Adds the HTML content of a URL to the InvertedIndex. The words are added to a local
+	 * index first, so the shared index is only changed once per URL.
 	 *
 	 * @param url the URL to add to the index
 	 * @param html the HTML content to add to the index
@@ -68,14 +70,19 @@ public class WebCrawler {
 
 		int positionCount = 0;
 
-		Stemmer stemmer = new SnowballStemmer(DEFAULT);
+		Stemmer stemmer = StemCache.get();
 		String urlName = url.toString();
+		InvertedIndex local = new InvertedIndex();
 
-		String[] parsedHtml = TextParser.parse(html);
+		TextTokenizer tokenizer = new TextTokenizer().reset(html);
 
-		for (String word : parsedHtml) {
-			String stemmedWord = stemmer.stem(word).toString();
-			index.add(stemmedWord, urlName, ++positionCount);
+		while (tokenizer.next()) {
+			String stemmedWord = stemmer.stem(tokenizer.token()).toString();
+			local.add(stemmedWord, urlName, ++positionCount);
+		}
+
+		if (positionCount > 0) {
+			index.addAll(local);
 		}
 	}
 
@@ -5,6 +5,13 @@ import java.util.LinkedList;
  * Brian Goetz. It is up to the user of this class to keep track of whether
  * there is any pending work remaining.
  *
+ * A queue may be given a capacity, in which case adding work blocks while that many
+ * requests are already waiting, and each request may be added with a lower limit of its
+ * own. Chaining bounded queues lets a slow stage hold back the stages that feed it
+ * instead of letting their work pile up. Each queue also counts the
+ * work it finished, how deep the queue got, and how long its threads spent running work
+ * and waiting for room.
+ *
  * @see <a href="https://www.ibm.com/developerworks/library/j-jtp0730/index.html">
  * Java Theory and Practice: Thread Pools and Work Queues</a>
  *
@@ -32,6 +39,27 @@ public class WorkQueue {
 	/** Tracks the amount of pending work. */
 	private int pending;
 
+	/** The most work requests that may wait in the queue before adding more blocks. */
+	private final int capacity;
+
+	/** The number of work requests finished. */
+	private long completed;
+
+	/** The most work requests waiting in the queue at once. */
+	private int maxDepth;
+
+	/** The number of threads waiting for room in the queue. */
+	private int blocked;
+
+	/** The total time in nanoseconds spent running work requests. */
+	private long busyTime;
+
+	/** The total time in nanoseconds spent waiting for room in the queue. */
+	private long blockedTime;
+
+	/** The time in nanoseconds the queue was started. */
+	private final long startTime;
+
 	/**
 	 * Starts a work queue with the default number of threads.
 	 *
@@ -45,12 +73,32 @@ public class WorkQueue {
 	 * Starts a work queue with the specified number of threads.
 	 *
 	 * @param threads number of worker threads; should be greater than 1
+	 *
+	 * @see #WorkQueue(int, int)
 	 */
 	public WorkQueue(int threads) {
+		this(threads, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads, where adding work blocks
+	 * while the given number of requests are already waiting.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @param capacity the most work requests that may wait in the queue
+	 */
+	public WorkQueue(int threads, int capacity) {
 		this.queue = new LinkedList<Runnable>();
 		this.workers = new PoolWorker[threads];
 		this.pending = 0;
 		this.shutdown = false;
+		this.capacity = Math.max(capacity, 1);
+		this.completed = 0;
+		this.maxDepth = 0;
+		this.blocked = 0;
+		this.busyTime = 0;
+		this.blockedTime = 0;
+		this.startTime = System.nanoTime();
 
 		// start the threads so they are waiting in the background
 		for (int i = 0; i < threads; i++) {
@@ -70,10 +118,14 @@ public class WorkQueue {
 
 	/**
 	 * Decrements the pending variable and notifies waiting threads if it's at 0.
+	 *
+	 * @param elapsed the time in nanoseconds spent running the finished work request
 	 */
-	private void decrementPending() {
+	private void decrementPending(long elapsed) {
 		synchronized (this) {
 			this.pending--;
+			this.completed++;
+			this.busyTime += elapsed;
 
 			if (pending <= 0) {
 				this.notifyAll();
@@ -83,15 +135,50 @@ public class WorkQueue {
 
 	/**
 	 * Adds a work request to the queue. A thread will process this request when
-	 * available.
+	 * available. If the queue is at capacity, waits until there is room first.
 	 *
 	 * @param r work request (in the form of a {@link Runnable} object)
+	 *
+	 * @see #execute(Runnable, int)
 	 */
 	public void execute(Runnable r) {
+		execute(r, capacity);
+	}
+
+	/**
+	 * Adds a work request to the queue, first waiting while the given number of requests
+	 * or the capacity of the queue are already waiting, whichever is less. Lets one
+	 * producer hold itself back on a queue that others use without a limit.
+	 *
+	 * @param r work request (in the form of a {@link Runnable} object)
+	 * @param limit the most work requests that may wait in the queue before this one is added
+	 */
+	public void execute(Runnable r, int limit) {
+		int room = Math.max(Math.min(limit, capacity), 1);
 		incrementPending();
 
 		synchronized (queue) {
+			if (queue.size() >= room) {
+				long start = System.nanoTime();
+				blocked++;
+
+				try {
+					while (queue.size() >= room && !shutdown) {
+						queue.wait();
+					}
+				}
+				catch (InterruptedException e) {
+					System.err.println("Warning: Work queue interrupted while waiting for room.");
+					Thread.currentThread().interrupt();
+				}
+				finally {
+					blocked--;
+				}
+				blockedTime += System.nanoTime() - start;
+			}
+
 			queue.addLast(r);
+			maxDepth = Math.max(maxDepth, queue.size());
 			queue.notifyAll();
 		}
 	}
@@ -136,6 +223,77 @@ public class WorkQueue {
 		return workers.length;
 	}
 
+	/**
+	 * Returns the number of work requests finished.
+	 *
+	 * @return number of finished work requests
+	 */
+	public long getCompleted() {
+		synchronized (this) {
+			return completed;
+		}
+	}
+
+	/**
+	 * Returns the number of work requests finished per second since the queue was started.
+	 *
+	 * @return throughput of the queue
+	 */
+	public double getThroughput() {
+		long elapsed = System.nanoTime() - startTime;
+		return elapsed <= 0 ? 0 : getCompleted() * 1e9 / elapsed;
+	}
+
+	/**
+	 * Returns the number of work requests waiting in the queue.
+	 *
+	 * @return current depth of the queue
+	 */
+	public int getDepth() {
+		synchronized (queue) {
+			return queue.size();
+		}
+	}
+
+	/**
+	 * Returns the most work requests that were waiting in the queue at once.
+	 *
+	 * @return largest depth of the queue
+	 */
+	public int getMaxDepth() {
+		synchronized (queue) {
+			return maxDepth;
+		}
+	}
+
+	/**
+	 * Returns the total time the worker threads spent running work requests.
+	 *
+	 * @return busy time in milliseconds
+	 */
+	public long getBusyTime() {
+		synchronized (this) {
+			return busyTime / 1000000;
+		}
+	}
+
+	/**
+	 * Returns the total time spent waiting for room in the queue to add work requests.
+	 *
+	 * @return blocked time in milliseconds
+	 */
+	public long getBlockedTime() {
+		synchronized (queue) {
+			return blockedTime / 1000000;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d threads, %d done (%.1f/s), depth %d (max %d), busy %d ms, blocked %d ms",
+				size(), getCompleted(), getThroughput(), getDepth(), getMaxDepth(), getBusyTime(), getBlockedTime());
+	}
+
 	/**
 	 * Waits until work is available in the work queue. When work is found, will
 	 * remove the work from the queue and run it. If a shutdown is detected,
@@ -168,9 +326,16 @@ public class WorkQueue {
 					}
 					else {
 						r = queue.removeFirst();
+
+						if (blocked > 0) {
+							// Wakes up anyone waiting for room in a full queue.
+							queue.notifyAll();
+						}
 					}
 				}
 
+				long start = System.nanoTime();
+
 				try {
 					r.run();
 				}
@@ -179,7 +344,7 @@ public class WorkQueue {
 					System.err.println("Warning: Work queue encountered an exception while running.");
 				}
 
-				decrementPending();
+				decrementPending(System.nanoTime() - start);
 			}
 		}
 	}
@@ -0,0 +1,137 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests boolean queries against a small index, both mutable and frozen.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class BooleanQueryTest {
+
+	/**
+	 * Builds an index of four locations from words that stem to themselves.
+	 *
+	 * @return the index
+	 */
+	private static InvertedIndex buildIndex() {
+		InvertedIndex index = new InvertedIndex();
+		add(index, "a.txt", "cat dog");
+		add(index, "b.txt", "dog dog fish");
+		add(index, "c.txt", "cat");
+		add(index, "d.txt", "fish");
+		return index;
+	}
+
+	/**
+	 * Adds the words of the text to the index, one position each.
+	 *
+	 * @param index the index to add to
+	 * @param location the location of the text
+	 * @param text the words to add
+	 */
+	private static void add(InvertedIndex index, String location, String text) {
+		String[] words = text.split(" ");
+
+		for (int i = 0; i < words.length; i++) {
+			index.add(words[i], location, i + 1);
+		}
+	}
+
+	/**
+	 * Searches both a mutable and a frozen copy of the index, and checks that they agree.
+	 *
+	 * @param line the boolean query to search for
+	 * @return the count of each location found
+	 */
+	private static Map<String, Integer> search(String line) {
+		BooleanQuery query = BooleanQuery.parse(line);
+		assertNotNull(query, line);
+
+		InvertedIndex index = buildIndex();
+		Map<String, Integer> found = collect(index.booleanSearch(query, Integer.MAX_VALUE));
+		assertEquals(found, collect(index.freeze().booleanSearch(query, Integer.MAX_VALUE)), line);
+		return found;
+	}
+
+	/**
+	 * Returns the count of each location in the search results.
+	 *
+	 * @param results the search results
+	 * @return the count of each location
+	 */
+	private static Map<String, Integer> collect(List<InvertedIndex.SearchResult> results) {
+		Map<String, Integer> found = new TreeMap<>();
+
+		for (InvertedIndex.SearchResult result : results) {
+			found.put(result.getWhere(), result.getCount());
+		}
+		return found;
+	}
+
+	/**
+	 * A query with only a negated word matches every location without the word.
+	 */
+	@Test
+	public void testNot() {
+		Map<String, Integer> found = search("NOT cat");
+		assertEquals(Map.of("b.txt", 0, "d.txt", 0), found);
+		assertFalse(found.containsKey("a.txt"));
+		assertFalse(found.containsKey("c.txt"));
+	}
+
+	/**
+	 * A negated word on its own side of an OR adds the locations without the word.
+	 */
+	@Test
+	public void testOrNot() {
+		assertEquals(Map.of("a.txt", 1, "b.txt", 2, "d.txt", 0), search("dog OR NOT cat"));
+	}
+
+	/**
+	 * A negated word in a conjunction only removes locations.
+	 */
+	@Test
+	public void testAndNot() {
+		assertEquals(Map.of("b.txt", 2), search("dog AND NOT cat"));
+	}
+
+	/**
+	 * Several negated words exclude every location with any of them.
+	 */
+	@Test
+	public void testNotNot() {
+		assertEquals(Map.of(), search("NOT cat AND NOT fish"));
+		assertEquals(Map.of("d.txt", 0), search("NOT cat NOT dog"));
+	}
+
+	/**
+	 * Operators are only parsed when boolean queries are turned on, so existing plain
+	 * queries keep their meaning and key.
+	 */
+	@Test
+	public void testOptionalOperators() {
+		assertEquals("and cat dog", SearchOptions.PARTIAL.parse("cats AND dogs").toString());
+		assertEquals("(cat AND dog)", SearchOptions.PARTIAL.withBoolean(true).parse("cats AND dogs").toString());
+	}
+
+	/**
+	 * Quotes and NEAR are only parsed when phrase queries are turned on, so existing plain
+	 * queries keep their meaning and key.
+	 */
+	@Test
+	public void testOptionalPhrases() {
+		assertEquals("cat dog", SearchOptions.PARTIAL.parse("\"dogs cats\"").toString());
+		assertEquals("\"dog cat\"", SearchOptions.PARTIAL.withPhrase(true).parse("\"dogs cats\"").toString());
+		assertEquals("cat dog near", SearchOptions.PARTIAL.parse("cats NEAR/2 dogs").toString());
+		assertEquals("cat NEAR/2 dog", SearchOptions.PARTIAL.withPhrase(true).parse("cats NEAR/2 dogs").toString());
+	}
+}
@@ -0,0 +1,146 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that MaxScore retrieval returns exactly the same best results as the exhaustive
+ * search, for every number of results on a fixed corpus.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class MaxScoreTest {
+
+	/** The words of the corpus, which are added without stemming. */
+	private static final String[] WORDS = {
+			"apple", "apricot", "banana", "blueberry", "cherry", "date", "fig", "grape", "kiwi", "lemon"
+	};
+
+	/** The queries to search for, as sets of words and prefixes. */
+	private static final List<Set<String>> QUERIES = List.of(
+			Set.of("apple"), Set.of("fig"), Set.of("apple", "fig"), Set.of("banana", "cherry", "kiwi"),
+			Set.of("lemon", "date"), Set.of("ap"), Set.of("b", "grape"), Set.of("missing"), Set.of("apple", "missing"));
+
+	/**
+	 * Builds a frozen index of random texts. Every fourth location is also copied under a
+	 * name that sorts before it but gets a larger ID, so scores tie and must be broken by
+	 * location instead of by ID.
+	 *
+	 * @return the frozen index
+	 */
+	private static FrozenIndex buildIndex() {
+		InvertedIndex index = new InvertedIndex();
+		Random random = new Random(212);
+
+		for (int i = 0; i < 40; i++) {
+			// Adds locations out of name order, so IDs do not follow names.
+			String location = String.format("doc%02d.txt", (i * 17) % 40);
+			int length = 1 + random.nextInt(30);
+			List<String> text = new ArrayList<>();
+
+			for (int position = 0; position < length; position++) {
+				text.add(WORDS[random.nextInt(WORDS.length)]);
+			}
+
+			add(index, location, text);
+
+			if (i % 4 == 0) {
+				add(index, "copy-" + location, text);
+			}
+		}
+		return index.freeze();
+	}
+
+	/**
+	 * Adds the words to the index, one position each.
+	 *
+	 * @param index the index to add to
+	 * @param location the location of the words
+	 * @param text the words to add
+	 */
+	private static void add(InvertedIndex index, String location, List<String> text) {
+		for (int i = 0; i < text.size(); i++) {
+			index.add(text.get(i), location, i + 1);
+		}
+	}
+
+	/**
+	 * Describes the search results in order, so lists can be compared in full.
+	 *
+	 * @param results the search results
+	 * @return the location, count, and score of each search result
+	 */
+	private static List<String> describe(List<InvertedIndex.SearchResult> results) {
+		List<String> described = new ArrayList<>();
+
+		for (InvertedIndex.SearchResult result : results) {
+			described.add(result.getWhere() + " " + result.getCount() + " " + result.getScore());
+		}
+		return described;
+	}
+
+	/**
+	 * Compares MaxScore against the exhaustive search for every query, both exact and
+	 * partial, and every number of results up to one more than the number of locations.
+	 *
+	 * @param exact whether to perform exact search
+	 */
+	private static void assertEquivalent(boolean exact) {
+		FrozenIndex index = buildIndex();
+		int locations = index.getPaths().size();
+
+		for (Set<String> query : QUERIES) {
+			Set<String> sorted = new TreeSet<>(query);
+
+			for (int k = 1; k <= locations + 1; k++) {
+				List<String> expected = describe(index.search(sorted, exact, k));
+				List<String> actual = describe(index.search(sorted, exact, k, true));
+				assertEquals(expected, actual, (exact ? "exact " : "partial ") + sorted + " k=" + k);
+			}
+		}
+	}
+
+	/**
+	 * MaxScore matches the exhaustive exact search.
+	 */
+	@Test
+	public void testExact() {
+		assertEquivalent(true);
+	}
+
+	/**
+	 * MaxScore matches the exhaustive partial search.
+	 */
+	@Test
+	public void testPartial() {
+		assertEquivalent(false);
+	}
+
+	/**
+	 * The corpus really has results that tie on score and count, ordered by location.
+	 */
+	@Test
+	public void testTies() {
+		List<InvertedIndex.SearchResult> results = buildIndex().search(Set.of("apple"), true, Integer.MAX_VALUE);
+		int ties = 0;
+
+		for (int i = 1; i < results.size(); i++) {
+			InvertedIndex.SearchResult previous = results.get(i - 1);
+			InvertedIndex.SearchResult current = results.get(i);
+
+			if (previous.getScore() == current.getScore() && previous.getCount() == current.getCount()) {
+				assertTrue(previous.getWhere().compareTo(current.getWhere()) < 0);
+				ties++;
+			}
+		}
+		assertTrue(ties > 0, "expected tied results");
+	}
+}
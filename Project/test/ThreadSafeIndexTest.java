@@ -0,0 +1,188 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the versioned mode of {@link ThreadSafeIndex} gives every search a
+ * consistent snapshot while writers keep adding to the index, and that it ends up with
+ * the same results as an index built without versions.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Fall 2019
+ */
+public class ThreadSafeIndexTest {
+
+	/** The number of batches the writer adds. */
+	private static final int BATCHES = 300;
+
+	/** The number of threads that search while the writer adds. */
+	private static final int READERS = 4;
+
+	/**
+	 * Builds one batch, which adds two locations that both contain the common word as
+	 * many times as the number of the batch, plus one word of their own.
+	 *
+	 * @param batch the number of the batch
+	 * @return the index holding the batch
+	 */
+	private static InvertedIndex buildBatch(int batch) {
+		InvertedIndex index = new InvertedIndex();
+
+		for (String side : List.of("a", "b")) {
+			String location = String.format("doc%03d%s.txt", batch, side);
+
+			for (int position = 1; position <= batch + 1; position++) {
+				index.add("common", location, position);
+			}
+			index.add("word" + batch, location, batch + 2);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the number of the batch that added the location.
+	 *
+	 * @param location the location
+	 * @return the number of its batch
+	 */
+	private static int batchOf(String location) {
+		return Integer.parseInt(location.substring(3, 6));
+	}
+
+	/**
+	 * Describes the search results in order, so lists can be compared in full.
+	 *
+	 * @param results the search results
+	 * @return the location, count, and score of each search result
+	 */
+	private static List<String> describe(List<InvertedIndex.SearchResult> results) {
+		List<String> described = new ArrayList<>();
+
+		for (InvertedIndex.SearchResult result : results) {
+			described.add(result.getWhere() + " " + result.getCount() + " " + result.getScore());
+		}
+		return described;
+	}
+
+	/**
+	 * Tests that searches made while batches are being added only ever see whole
+	 * batches, in the order they were added, and never fewer than before.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	@Test
+	public void testReadsDuringWrites() throws InterruptedException {
+		ThreadSafeIndex index = new ThreadSafeIndex(true);
+		AtomicBoolean done = new AtomicBoolean(false);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> readers = new ArrayList<>();
+
+		for (int i = 0; i < READERS; i++) {
+			Thread reader = new Thread(() -> {
+				int seen = 0;
+
+				try {
+					while (!done.get()) {
+						List<InvertedIndex.SearchResult> results = index.search(Set.of("common"), true);
+
+						assertEquals(0, results.size() % 2, "a batch was only partly visible");
+						assertTrue(results.size() >= seen, "a search saw fewer batches than before");
+						seen = results.size();
+
+						for (InvertedIndex.SearchResult result : results) {
+							int batch = batchOf(result.getWhere());
+							assertTrue(batch < results.size() / 2, "a later batch was visible before an earlier one");
+							assertEquals(batch + 1, result.getCount(), "a location was only partly visible");
+						}
+					}
+				}
+				catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+
+			readers.add(reader);
+			reader.start();
+		}
+
+		for (int batch = 0; batch < BATCHES; batch++) {
+			index.addAll(buildBatch(batch));
+		}
+
+		done.set(true);
+
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+
+		assertEquals(2 * BATCHES, index.search(Set.of("common"), true).size());
+	}
+
+	/**
+	 * Tests that the versioned index returns the same results as a plain index after the
+	 * same batches and single words are added.
+	 */
+	@Test
+	public void testSameResults() {
+		InvertedIndex expected = new InvertedIndex();
+		ThreadSafeIndex actual = new ThreadSafeIndex(true);
+
+		for (int batch = 0; batch < 20; batch++) {
+			expected.addAll(buildBatch(batch));
+			actual.addAll(buildBatch(batch));
+
+			expected.add("common", "doc000a.txt", 100 + batch);
+			actual.add("common", "doc000a.txt", 100 + batch);
+		}
+
+		actual.publish();
+
+		for (Set<String> queries : List.of(Set.of("common"), Set.of("word1"), Set.of("word"), Set.of("missing"))) {
+			for (boolean exact : new boolean[] { true, false }) {
+				assertEquals(describe(expected.search(queries, exact)), describe(actual.search(queries, exact)));
+			}
+		}
+
+		assertEquals(expected.getWords(), actual.getWords());
+		assertEquals(expected.getPaths(), actual.getPaths());
+		assertEquals(expected.getCount("doc000a.txt"), actual.getCount("doc000a.txt"));
+		assertEquals(describe(expected.phraseSearch(List.of("common", "common"), 10)),
+				describe(actual.phraseSearch(List.of("common", "common"), 10)));
+	}
+
+	/**
+	 * Tests that words added one at a time are only visible once published, and that the
+	 * generation moves on with every published version.
+	 */
+	@Test
+	public void testPublish() {
+		ThreadSafeIndex index = new ThreadSafeIndex(true);
+		long generation = index.getGeneration();
+
+		index.add("hello", "hello.txt", 1);
+		assertFalse(index.contains("hello"));
+		assertEquals(generation, index.getGeneration());
+
+		index.publish();
+		assertTrue(index.contains("hello", "hello.txt", 1));
+		assertTrue(index.getGeneration() > generation);
+
+		generation = index.getGeneration();
+		index.addAll(buildBatch(0));
+		assertTrue(index.contains("word0"));
+		assertTrue(index.getGeneration() > generation);
+	}
+}